@@ -1,12 +1,17 @@
 package org.strisys.api.pipeline.controller;
 
 import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.server.ResponseStatusException;
 import org.strisys.api.exception.ApiError;
+import org.strisys.service.exception.AddressImportException;
+import org.strisys.service.exception.PhotoVersionConflictException;
+import org.strisys.service.exception.UnsupportedPhotoContentException;
+import org.strisys.service.exception.UploadQueueFullException;
 
 import java.time.LocalDateTime;
 
@@ -36,4 +41,54 @@ public class DefaultExceptionHandler {
 
         return new ResponseEntity<>(apiError, e.getStatusCode());
     }
-}
\ No newline at end of file
+
+    @ExceptionHandler(UnsupportedPhotoContentException.class)
+    public ResponseEntity<ApiError> handleUnsupportedContent(UnsupportedPhotoContentException e, HttpServletRequest request) {
+        ApiError apiError = new ApiError(
+            request.getRequestURI(),
+            e.getMessage(),
+            HttpStatus.UNSUPPORTED_MEDIA_TYPE.value(),
+            LocalDateTime.now()
+        );
+
+        return new ResponseEntity<>(apiError, HttpStatus.UNSUPPORTED_MEDIA_TYPE);
+    }
+
+    @ExceptionHandler(AddressImportException.class)
+    public ResponseEntity<ApiError> handleAddressImport(AddressImportException e, HttpServletRequest request) {
+        ApiError apiError = new ApiError(
+            request.getRequestURI(),
+            e.getMessage(),
+            HttpStatus.BAD_REQUEST.value(),
+            LocalDateTime.now()
+        );
+
+        return new ResponseEntity<>(apiError, HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(UploadQueueFullException.class)
+    public ResponseEntity<ApiError> handleUploadQueueFull(UploadQueueFullException e, HttpServletRequest request) {
+        ApiError apiError = new ApiError(
+            request.getRequestURI(),
+            e.getMessage(),
+            HttpStatus.SERVICE_UNAVAILABLE.value(),
+            LocalDateTime.now()
+        );
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, "1")
+            .body(apiError);
+    }
+
+    @ExceptionHandler(PhotoVersionConflictException.class)
+    public ResponseEntity<ApiError> handleVersionConflict(PhotoVersionConflictException e, HttpServletRequest request) {
+        ApiError apiError = new ApiError(
+            request.getRequestURI(),
+            e.getMessage(),
+            HttpStatus.CONFLICT.value(),
+            LocalDateTime.now()
+        );
+
+        return new ResponseEntity<>(apiError, HttpStatus.CONFLICT);
+    }
+}
@@ -0,0 +1,120 @@
+package org.strisys.api.pipeline.controller.addresses;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import jakarta.validation.Valid;
+import lombok.extern.slf4j.Slf4j;
+
+import org.strisys.model.entity.Address;
+import org.strisys.model.entity.AddressState;
+import org.strisys.service.AddressService;
+import org.strisys.service.imports.AddressImportFormat;
+import org.strisys.service.imports.AddressImportResult;
+import org.strisys.service.lookup.LookupResult;
+import org.strisys.service.search.AddressField;
+import org.strisys.service.search.AddressMatch;
+
+@Slf4j
+@RestController
+@RequestMapping({"api/addresses"})
+public class AddressController {
+    private static final String TEXT_CSV_VALUE = "text/csv";
+    private static final String CREATE = "create";
+    private static final String CREATE_OR_GET = "create-or-get";
+
+    private final AddressService service;
+    private final int defaultSearchLimit;
+    private final int maxSearchLimit;
+    private final int maxLookupIds;
+
+    public AddressController(
+            AddressService service,
+            @Value("${address.search.limit:10}") int defaultSearchLimit,
+            @Value("${address.search.max-limit:50}") int maxSearchLimit,
+            @Value("${address.lookup.max-ids:1000}") int maxLookupIds) {
+
+        this.service = service;
+        this.defaultSearchLimit = defaultSearchLimit;
+        this.maxSearchLimit = maxSearchLimit;
+        this.maxLookupIds = maxLookupIds;
+    }
+
+    /**
+     * Resolves a JSON array of address identifiers in one request: the addresses found,
+     * in request order, and the identifiers that matched nothing.
+     */
+    @PostMapping("/lookup")
+    public LookupResult<Address> lookupAddresses(@RequestBody List<String> ids) {
+        if (ids.size() > maxLookupIds) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, String.format("At most %d ids per lookup", maxLookupIds));
+        }
+
+        return service.lookup(ids);
+    }
+
+    /**
+     * Autocomplete: addresses whose city, street name or postal code (or only the given
+     * {@code field}) starts with {@code q}, answered from the in-memory prefix index.
+     */
+    @GetMapping("/search")
+    public List<AddressMatch> search(
+            @RequestParam("q") String query,
+            @RequestParam(required = false) String field,
+            @RequestParam(required = false) Integer limit) {
+
+        AddressField searched = (field != null) ? AddressField.tryParse(field) : null;
+
+        if ((field != null) && (searched == null)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown search field " + field);
+        }
+
+        int size = Math.min(((limit != null) && (limit > 0)) ? limit : defaultSearchLimit, maxSearchLimit);
+        return service.search(query, searched, size);
+    }
+
+    /**
+     * Stores an address and answers 201. With {@code mode=create-or-get} an address
+     * matching an existing one after normalization (case, spacing, street abbreviations,
+     * ZIP+4) is not stored again; the existing one is returned with 200.
+     */
+    @PostMapping({"", "/"})
+    public ResponseEntity<Address> createAddress(
+            @RequestBody @Valid AddressState body,
+            @RequestParam(defaultValue = CREATE) String mode) {
+
+        if (CREATE.equals(mode)) {
+            return ResponseEntity.status(HttpStatus.CREATED).body(service.createAndPersist(body));
+        }
+
+        if (!CREATE_OR_GET.equals(mode)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown mode " + mode);
+        }
+
+        AddressService.Stored stored = service.createOrGet(body);
+        return ResponseEntity.status(stored.created() ? HttpStatus.CREATED : HttpStatus.OK).body(stored.address());
+    }
+
+    /**
+     * Imports a CSV or NDJSON body read straight off the request stream, so the size of
+     * an import is bounded by neither the heap nor the multipart limits.
+     */
+    @PostMapping(value = "/import", consumes = {TEXT_CSV_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<AddressImportResult> importAddresses(
+            @RequestHeader("Content-Type") MediaType contentType,
+            InputStream body) throws IOException {
+
+        AddressImportFormat format = MediaType.APPLICATION_NDJSON.isCompatibleWith(contentType)
+                ? AddressImportFormat.NDJSON
+                : AddressImportFormat.CSV;
+
+        return ResponseEntity.ok(service.importAll(body, format));
+    }
+}
@@ -0,0 +1,126 @@
+package org.strisys.api.pipeline.controller.photos;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.strisys.model.entity.PhotoState;
+import org.strisys.model.entity.PhotoVariant;
+
+/**
+ * HTTP validators and cache policy for photo resources. Metadata is validated by the
+ * entity version, bytes by their SHA-256 checksum; a download addressed by that
+ * checksum ({@code ?v=}) can never change and is marked immutable.
+ */
+final class PhotoCaching {
+    static final String VERSION_PARAM = "v";
+
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable();
+    private static final CacheControl REVALIDATE = CacheControl.noCache();
+
+    private PhotoCaching() {
+    }
+
+    static String getMetadataETag(PhotoState state) {
+        return String.format("\"%s-v%s\"", state.getUuid(), state.getVersion());
+    }
+
+    static String getContentETag(PhotoState state) {
+        return (state.getChecksum() != null) ? String.format("\"%s\"", state.getChecksum()) : getMetadataETag(state);
+    }
+
+    static String getContentETag(PhotoState state, PhotoVariant variant) {
+        String etag = getContentETag(state);
+        return variant.isDerived() ? String.format("%s-%s\"", etag.substring(0, etag.length() - 1), variant.getKey()) : etag;
+    }
+
+    static Instant getLastModified(PhotoState state) {
+        LocalDateTime value = (state.getModifiedAt() != null) ? state.getModifiedAt() : state.getCreatedAt();
+        return (value != null) ? value.atZone(ZoneId.systemDefault()).toInstant() : Instant.EPOCH;
+    }
+
+    static CacheControl getMetadataCacheControl() {
+        return REVALIDATE;
+    }
+
+    static CacheControl getContentCacheControl(PhotoState state, String requestedVersion) {
+        boolean addressed = (requestedVersion != null) && requestedVersion.equals(state.getChecksum());
+        return addressed ? IMMUTABLE : REVALIDATE;
+    }
+
+    /**
+     * Honours {@code If-Range}: a range applies only when the validator still matches,
+     * otherwise the full representation must be sent.
+     */
+    static boolean isRangeApplicable(HttpHeaders requestHeaders, String etag, Instant lastModified) {
+        String ifRange = requestHeaders.getFirst(HttpHeaders.IF_RANGE);
+
+        if (ifRange == null) {
+            return true;
+        }
+
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(etag);
+        }
+
+        try {
+            ZonedDateTime date = requestHeaders.getFirstZonedDateTime(HttpHeaders.IF_RANGE);
+            return (date != null) && (date.toInstant().getEpochSecond() == lastModified.getEpochSecond());
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads {@code Accept-Encoding} with its q-values: gzip is acceptable when listed, or
+     * covered by {@code *}, with a non-zero weight. An explicit {@code gzip;q=0} wins over
+     * {@code *}.
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+
+        Double gzip = null;
+        Double any = null;
+
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            double weight = getWeight(parts);
+
+            if (name.equals("gzip") || name.equals("x-gzip")) {
+                gzip = (gzip == null) ? weight : Math.max(gzip, weight);
+            } else if (name.equals("*")) {
+                any = weight;
+            }
+        }
+
+        if (gzip != null) {
+            return gzip > 0;
+        }
+
+        return (any != null) && (any > 0);
+    }
+
+    private static double getWeight(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+
+            if (parameter.regionMatches(true, 0, "q=", 0, 2)) {
+                try {
+                    return Double.parseDouble(parameter.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+
+        return 1;
+    }
+}
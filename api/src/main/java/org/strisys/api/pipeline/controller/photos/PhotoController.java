@@ -1,53 +1,168 @@
 package org.strisys.api.pipeline.controller.photos;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.Instant;
 import java.util.*;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
+import org.springframework.http.server.ServletServerHttpResponse;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import org.strisys.model.entity.Photo;
+import org.strisys.model.entity.PhotoPatch;
 import org.strisys.model.entity.PhotoState;
+import org.strisys.model.entity.PhotoUpload;
+import org.strisys.model.entity.PhotoVariant;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 
 import org.strisys.service.PhotoService;
+import org.strisys.service.cache.PhotoListingCache;
+import org.strisys.service.lookup.LookupResult;
+import org.strisys.service.writebehind.PhotoUploadStatus;
 
 @Slf4j
 @RestController
 @RequestMapping({"api/photos"})
 public class PhotoController {
     private final PhotoService service;
+    private final ObjectWriter rowWriter;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+    private final int maxLookupIds;
+    private final int maxDeleteIds;
+
+    public PhotoController(
+            PhotoService service,
+            ObjectMapper mapper,
+            @Value("${photo.listing.page-size:100}") int defaultPageSize,
+            @Value("${photo.listing.max-page-size:1000}") int maxPageSize,
+            @Value("${photo.lookup.max-ids:1000}") int maxLookupIds,
+            @Value("${photo.delete.max-ids:1000}") int maxDeleteIds) {
 
-    public PhotoController(PhotoService service) {
         this.service = service;
+        this.rowWriter = mapper.writerFor(PhotoState.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+        this.maxLookupIds = maxLookupIds;
+        this.maxDeleteIds = maxDeleteIds;
     }
 
-    @GetMapping({"", "/"})
-    public Collection<PhotoState> getPhotos() {
-        Collection<PhotoState> states = new ArrayList<>();
+    /**
+     * Answers the whole listing from the pre-encoded snapshot, gzipped when the client
+     * accepts it, and with 304 when the client's copy is current.
+     */
+    @GetMapping(value = {"", "/"}, params = {"!after", "!limit", "stream!=true"})
+    public ResponseEntity<byte[]> getPhotos(@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        PhotoListingCache.Snapshot listing = service.getListing();
+        boolean gzip = listing.hasGzip() && PhotoCaching.acceptsGzip(acceptEncoding);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                .cacheControl(CacheControl.noCache());
 
-        for (Photo photo : service.getAll()) {
-            PhotoState state = photo.getState();
+        if (!gzip) {
+            return response.eTag(listing.etag()).body(listing.json());
+        }
 
-            if (state != null) {
-                states.add(state);
-            }
+        return response
+                .eTag(listing.gzipEtag())
+                .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                .body(listing.gzipped());
+    }
+
+    @GetMapping(value = {"", "/"}, params = "stream!=true")
+    public ResponseEntity<Collection<PhotoState>> getPhotoPage(
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer limit) {
+
+        int pageSize = Math.min(((limit != null) && (limit > 0)) ? limit : defaultPageSize, maxPageSize);
+        List<PhotoState> states = toStates(service.getPage((after != null) ? after : 0L, pageSize));
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+
+        if (states.size() == pageSize) {
+            Long next = states.get(states.size() - 1).getId();
+            URI nextUri = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("after", next)
+                    .replaceQueryParam("limit", pageSize)
+                    .build()
+                    .toUri();
+
+            response.header("X-Next-Cursor", next.toString());
+            response.header(HttpHeaders.LINK, String.format("<%s>; rel=\"next\"", nextUri));
         }
 
-        return states;
+        return response.body(states);
+    }
+
+    /**
+     * Writes the listing as a JSON array row by row off a database cursor, so memory
+     * use does not grow with the size of the table.
+     */
+    @GetMapping(value = {"", "/"}, params = "stream=true")
+    public void streamPhotos(HttpServletResponse servletResponse) throws IOException {
+        servletResponse.setContentType(MediaType.APPLICATION_JSON_VALUE);
+
+        try (JsonGenerator json = rowWriter.createGenerator(servletResponse.getOutputStream())) {
+            json.writeStartArray();
+
+            service.forEach(photo -> {
+                PhotoState state = photo.getState();
+
+                if (state == null) {
+                    return;
+                }
+
+                try {
+                    rowWriter.writeValue(json, state);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            json.writeEndArray();
+        }
     }
 
     @GetMapping("/{id}")
-    public PhotoState getPhoto(@PathVariable String id) {
+    public ResponseEntity<PhotoState> getPhoto(@PathVariable String id) {
         PhotoState photoState = service.tryGet(id).getState();
 
         if  ((photoState == null) || (photoState.isNull())) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND);
         }
 
-        return photoState;
+        // ResponseEntity validators let Spring answer If-None-Match/If-Modified-Since with 304
+        return ResponseEntity.ok()
+                .eTag(PhotoCaching.getMetadataETag(photoState))
+                .lastModified(PhotoCaching.getLastModified(photoState))
+                .cacheControl(PhotoCaching.getMetadataCacheControl())
+                .body(photoState);
+    }
+
+    /**
+     * Resolves a JSON array of photo identifiers in one request: the photos found, in
+     * request order, and the identifiers that matched nothing.
+     */
+    @PostMapping("/lookup")
+    public LookupResult<PhotoState> lookupPhotos(@RequestBody List<String> ids) {
+        if (ids.size() > maxLookupIds) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, String.format("At most %d ids per lookup", maxLookupIds));
+        }
+
+        return service.lookup(ids).map(Photo::getState);
     }
 
     @PostMapping()
@@ -56,30 +171,131 @@ public class PhotoController {
         return response.body(service.save(body.getFileName()).getState());
     }
 
+    /**
+     * Stores the upload and answers 201, or in write-behind mode stages it and answers
+     * 202 with the status resource as its location.
+     */
     @PostMapping("/upload")
-    public ResponseEntity<PhotoState> uploadPhoto(@RequestPart("data") MultipartFile part) throws IOException {
-        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.CREATED);
-        byte[] bytes = part.getBytes();
-        Photo photo = service.save(part.getOriginalFilename(), bytes, part.getContentType());
-        return response.body(photo.getState());
+    public ResponseEntity<?> uploadPhoto(@RequestPart("data") MultipartFile part) throws IOException {
+        if (service.isWriteBehind()) {
+            PhotoUploadStatus status;
+
+            try (InputStream in = part.getInputStream()) {
+                status = service.stage(part.getOriginalFilename(), in, part.getContentType());
+            }
+
+            URI statusUri = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .path("/{id}/status")
+                    .buildAndExpand(status.uuid())
+                    .toUri();
+
+            return ResponseEntity.accepted().location(statusUri).body(status);
+        }
+
+        // the part is re-opened to detect, hash and store it
+        Photo photo = service.save(new PhotoUpload(part.getOriginalFilename(), part.getContentType(), part.getSize(), part));
+        return ResponseEntity.status(HttpStatus.CREATED).body(photo.getState());
     }
 
-    @GetMapping("/download/{id}")
-    public ResponseEntity<byte[]> downloadPhoto(@PathVariable String id) {
-        PhotoState photoState = service.tryGet(id).getState();
+    @GetMapping("/upload/{id}/status")
+    public PhotoUploadStatus getUploadStatus(@PathVariable String id) {
+        PhotoUploadStatus status = service.getUploadStatus(id);
 
-        if  (photoState == null) {
+        if (status.state() == PhotoUploadStatus.State.UNKNOWN) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND);
         }
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.valueOf(photoState.getContentType()));
-        headers.setContentDisposition(ContentDisposition.builder("attachment")
-                .filename(photoState.getFileName())
-                .build());
+        return status;
+    }
+
+    @PostMapping("/upload/batch")
+    public ResponseEntity<Collection<PhotoState>> uploadPhotos(@RequestPart("data") List<MultipartFile> parts) throws IOException {
+        List<PhotoUpload> uploads = new ArrayList<>(parts.size());
+
+        for (MultipartFile part : parts) {
+            uploads.add(new PhotoUpload(part.getOriginalFilename(), part.getContentType(), part.getSize(), part));
+        }
+
+        return ResponseEntity.status(HttpStatus.CREATED).body(toStates(service.saveAll(uploads)));
+    }
+
+    @GetMapping("/download/{id}")
+    public void downloadPhoto(
+            @PathVariable String id,
+            @RequestParam(name = "size", required = false) String size,
+            @RequestParam(name = PhotoCaching.VERSION_PARAM, required = false) String version,
+            @RequestHeader HttpHeaders requestHeaders,
+            ServletWebRequest webRequest,
+            HttpServletResponse servletResponse) throws IOException {
+
+        Download download = resolveDownload(id, size, version);
+        Instant lastModified = PhotoCaching.getLastModified(download.state());
+        servletResponse.setHeader(HttpHeaders.CACHE_CONTROL, download.cacheControl().getHeaderValue());
+
+        // validators come from metadata alone, so a 304 never reads the bytes
+        if (webRequest.checkNotModified(download.etag(), lastModified.toEpochMilli())) {
+            return;
+        }
+
+        long length = download.length();
+        ServletServerHttpResponse response = new ServletServerHttpResponse(servletResponse);
+        HttpHeaders headers = getDownloadHeaders(download.state());
+        HttpRange range = PhotoCaching.isRangeApplicable(requestHeaders, download.etag(), lastModified) ? tryGetRange(requestHeaders) : null;
+        long start = 0;
+        long count = length;
+
+        if (range != null) {
+            start = range.getRangeStart(length);
+            count = range.getRangeEnd(length) - start + 1;
+
+            if ((start >= length) || (count <= 0)) {
+                response.setStatusCode(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.getHeaders().set(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.flush();
+                return;
+            }
+
+            response.setStatusCode(HttpStatus.PARTIAL_CONTENT);
+            headers.set(HttpHeaders.CONTENT_RANGE, String.format("bytes %d-%d/%d", start, start + count - 1, length));
+        }
+
+        headers.setContentLength(count);
+        response.getHeaders().putAll(headers);
+
+        service.writeFile(id, download.variant(), length, start, count, response.getBody());
+        response.flush();
+    }
 
-        byte[] bytes = photoState.getFile();
-        return ResponseEntity.ok().headers(headers).body(bytes);
+    @RequestMapping(value = "/download/{id}", method = RequestMethod.HEAD)
+    public ResponseEntity<Void> headPhoto(
+            @PathVariable String id,
+            @RequestParam(name = "size", required = false) String size,
+            @RequestParam(name = PhotoCaching.VERSION_PARAM, required = false) String version) {
+
+        Download download = resolveDownload(id, size, version);
+        HttpHeaders headers = getDownloadHeaders(download.state());
+        headers.setContentLength(download.length());
+
+        return ResponseEntity.ok()
+                .headers(headers)
+                .eTag(download.etag())
+                .lastModified(PhotoCaching.getLastModified(download.state()))
+                .cacheControl(download.cacheControl())
+                .build();
+    }
+
+    /**
+     * Edits file name and/or content type; answers 409 when {@code version} is stale.
+     */
+    @PatchMapping("/{id}")
+    public PhotoState patchPhoto(@PathVariable String id, @Valid @RequestBody PhotoPatch patch) {
+        PhotoState photoState = service.update(id, patch.fileName(), patch.contentType(), patch.version()).getState();
+
+        if (photoState.isNull()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+
+        return photoState;
     }
 
     @DeleteMapping("/{id}")
@@ -92,4 +308,101 @@ public class PhotoController {
 
         return photoState;
     }
+
+    /**
+     * Deletes many photos at once; {@code found} lists the identifiers deleted.
+     */
+    @PostMapping("/delete")
+    public LookupResult<String> deletePhotos(@RequestBody List<String> ids) {
+        if (ids.size() > maxDeleteIds) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, String.format("At most %d ids per delete", maxDeleteIds));
+        }
+
+        return service.removeAll(ids);
+    }
+
+    private static List<PhotoState> toStates(Collection<Photo> photos) {
+        List<PhotoState> states = new ArrayList<>(photos.size());
+
+        for (Photo photo : photos) {
+            PhotoState state = photo.getState();
+
+            if (state != null) {
+                states.add(state);
+            }
+        }
+
+        return states;
+    }
+
+    private PhotoState getDownloadable(String id) {
+        PhotoState photoState = service.tryGet(id).getState();
+
+        if  ((photoState == null) || (photoState.isNull())) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+
+        return photoState;
+    }
+
+    private static long getFileLength(PhotoState photoState) {
+        return (photoState.getSize() != null) ? photoState.getSize() : 0L;
+    }
+
+    /**
+     * Picks the stored rendition for {@code ?size=}. A derived variant that has not been
+     * generated yet falls back to the original, which must then be revalidated rather
+     * than cached as immutable.
+     */
+    private Download resolveDownload(String id, String size, String version) {
+        PhotoVariant variant = PhotoVariant.tryParse(size).orElseThrow(() ->
+                new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown size: " + size));
+
+        PhotoState photoState = getDownloadable(id);
+        CacheControl cacheControl = PhotoCaching.getContentCacheControl(photoState, version);
+
+        if (variant.isDerived()) {
+            OptionalLong length = service.getVariantLength(id, variant);
+
+            if (length.isPresent()) {
+                return new Download(photoState, variant, length.getAsLong(), PhotoCaching.getContentETag(photoState, variant), cacheControl);
+            }
+
+            cacheControl = PhotoCaching.getMetadataCacheControl();
+        }
+
+        return new Download(photoState, PhotoVariant.ORIGINAL, getFileLength(photoState), PhotoCaching.getContentETag(photoState), cacheControl);
+    }
+
+    private record Download(PhotoState state, PhotoVariant variant, long length, String etag, CacheControl cacheControl) {
+    }
+
+    private static HttpHeaders getDownloadHeaders(PhotoState photoState) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(toMediaType(photoState.getContentType()));
+        headers.setContentDisposition(ContentDisposition.builder("attachment")
+                .filename(photoState.getFileName())
+                .build());
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        return headers;
+    }
+
+    private static MediaType toMediaType(String contentType) {
+        try {
+            return MediaType.valueOf(contentType);
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_OCTET_STREAM;
+        }
+    }
+
+    // Multi-range requests are answered with the full body, which RFC 9110 permits
+    private static HttpRange tryGetRange(HttpHeaders requestHeaders) {
+        try {
+            List<HttpRange> ranges = requestHeaders.getRange();
+            return (ranges.size() == 1) ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
 }
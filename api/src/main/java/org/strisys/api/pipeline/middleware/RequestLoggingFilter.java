@@ -6,10 +6,16 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Debug trace of each request. Latency is measured by the {@code http.server.requests}
+ * timer, tagged by route template; see the metrics section of application.properties.
+ */
 @Slf4j
 @Component
 public class RequestLoggingFilter extends OncePerRequestFilter {
@@ -21,15 +27,20 @@ public class RequestLoggingFilter extends OncePerRequestFilter {
             FilterChain filterChain)
             throws ServletException, IOException {
 
-        long startTime = System.currentTimeMillis();
-        String method = request.getMethod();
-        String uri = request.getRequestURI();
+        if (!log.isDebugEnabled()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
 
-        filterChain.doFilter(request, response);
+        long startTime = System.nanoTime();
 
-        long duration = System.currentTimeMillis() - startTime;
-        int status = response.getStatus();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+            Object route = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
 
-        log.info("{} {} -> {} ({} ms)", method, uri, status, duration);
+            log.debug("{} {} [{}] -> {} ({} ms)", request.getMethod(), request.getRequestURI(), route, response.getStatus(), duration);
+        }
     }
 }
@@ -0,0 +1,211 @@
+package org.strisys.api.pipeline.middleware;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.PathContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import org.strisys.api.exception.ApiError;
+
+/**
+ * Admission control for the endpoints that move file bodies. Each transfer reserves its
+ * size (an upload's {@code Content-Length}, a fixed cost per download or streamed import)
+ * from a global budget of in-flight bytes before it reaches the controller; when the budget is spent
+ * it waits in a fair queue for up to {@code admission.max-wait}, and is answered 429
+ * with {@code Retry-After} when the wait or the queue runs out. Every other request
+ * bypasses the budget, so small calls keep their latency during an ingest spike.
+ * <p>
+ * Exports {@code admission.inflight.bytes}, {@code admission.queue.depth}, and per
+ * endpoint {@code admission.transfers.active} and {@code admission.rejections}.
+ */
+@Slf4j
+@Component
+public class TransferAdmissionFilter extends OncePerRequestFilter {
+    private static final long KIB = 1024;
+    private static final long CONTENT_LENGTH = -1;
+
+    private final boolean enabled;
+    private final int budgetKib;
+    private final long unknownLengthCost;
+    private final int maxQueued;
+    private final Duration maxWait;
+    private final Duration retryAfter;
+    private final ObjectMapper mapper;
+    private final Semaphore budget;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final List<Route> routes;
+
+    private record Route(String endpoint, HttpMethod method, PathPattern pattern, long cost, AtomicInteger active, Counter rejections) {
+        boolean matches(HttpServletRequest request, PathContainer path) {
+            return method.matches(request.getMethod()) && pattern.matches(path);
+        }
+    }
+
+    public TransferAdmissionFilter(
+            ObjectMapper mapper,
+            MeterRegistry registry,
+            @Value("${admission.enabled:true}") boolean enabled,
+            @Value("${admission.max-in-flight:256MB}") DataSize maxInFlight,
+            @Value("${admission.download-cost:1MB}") DataSize downloadCost,
+            @Value("${admission.import-cost:1MB}") DataSize importCost,
+            @Value("${spring.servlet.multipart.max-request-size:100MB}") DataSize unknownLengthCost,
+            @Value("${admission.max-queued:64}") int maxQueued,
+            @Value("${admission.max-wait:2s}") Duration maxWait,
+            @Value("${admission.retry-after:1s}") Duration retryAfter) {
+
+        this.mapper = mapper;
+        this.enabled = enabled;
+        this.budgetKib = Math.toIntExact(Math.max(1, maxInFlight.toBytes() / KIB));
+        this.unknownLengthCost = unknownLengthCost.toBytes();
+        this.maxQueued = maxQueued;
+        this.maxWait = maxWait;
+        this.retryAfter = retryAfter;
+        this.budget = new Semaphore(budgetKib, true);
+        this.routes = List.of(
+                createRoute(registry, "upload", HttpMethod.POST, "/api/photos/upload/**", CONTENT_LENGTH),
+                createRoute(registry, "import", HttpMethod.POST, "/api/addresses/import", importCost.toBytes()),
+                createRoute(registry, "download", HttpMethod.GET, "/api/photos/download/**", downloadCost.toBytes()));
+
+        Gauge.builder("admission.inflight.bytes", budget, b -> (double) (budgetKib - b.availablePermits()) * KIB)
+                .baseUnit("bytes")
+                .description("Bytes reserved by admitted transfers")
+                .register(registry);
+        Gauge.builder("admission.queue.depth", queued, AtomicInteger::get)
+                .description("Transfers waiting for budget")
+                .register(registry);
+    }
+
+    private static Route createRoute(MeterRegistry registry, String endpoint, HttpMethod method, String pattern, long cost) {
+        AtomicInteger active = new AtomicInteger();
+
+        Gauge.builder("admission.transfers.active", active, AtomicInteger::get)
+                .tag("endpoint", endpoint)
+                .description("Admitted transfers in progress")
+                .register(registry);
+
+        Counter rejections = Counter.builder("admission.rejections")
+                .tag("endpoint", endpoint)
+                .description("Transfers answered 429 for lack of budget")
+                .register(registry);
+
+        return new Route(endpoint, method, PathPatternParser.defaultInstance.parse(pattern), cost, active, rejections);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || (getRoute(request) == null);
+    }
+
+    @Override
+    protected void doFilterInternal(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain filterChain)
+            throws ServletException, IOException {
+
+        Route route = getRoute(request);
+        int permits = getPermits(request, route);
+
+        if (!admit(permits)) {
+            route.rejections().increment();
+            reject(request, response);
+            return;
+        }
+
+        route.active().incrementAndGet();
+
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            route.active().decrementAndGet();
+            budget.release(permits);
+        }
+    }
+
+    private Route getRoute(HttpServletRequest request) {
+        PathContainer path = PathContainer.parsePath(request.getRequestURI().substring(request.getContextPath().length()));
+
+        for (Route route : routes) {
+            if (route.matches(request, path)) {
+                return route;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * An upload is charged its {@code Content-Length}, the volume it admits into the
+     * multipart spool and the blob store while it runs; an import is consumed in bounded
+     * batches and is charged a fixed cost like a download, rather than holding its full
+     * body size for as long as the import runs.
+     *
+     * @return the cost in KiB, capped at the whole budget so an oversized transfer can
+     *         still run on its own
+     */
+    private int getPermits(HttpServletRequest request, Route route) {
+        long bytes = (route.cost() != CONTENT_LENGTH)
+                ? route.cost()
+                : ((request.getContentLengthLong() >= 0) ? request.getContentLengthLong() : unknownLengthCost);
+
+        return (int) Math.min(budgetKib, Math.max(1, (bytes + KIB - 1) / KIB));
+    }
+
+    private boolean admit(int permits) {
+        try {
+            // the timed variant honours the fair queue, plain tryAcquire would barge
+            if (budget.tryAcquire(permits, 0, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        try {
+            return (queued.incrementAndGet() <= maxQueued)
+                    && budget.tryAcquire(permits, maxWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+    private void reject(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ApiError apiError = new ApiError(
+                request.getRequestURI(),
+                "Too many transfers in progress, retry later",
+                HttpStatus.TOO_MANY_REQUESTS.value(),
+                LocalDateTime.now());
+
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, retryAfter.toSeconds())));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        mapper.writeValue(response.getOutputStream(), apiError);
+    }
+}
@@ -63,9 +63,12 @@
             }
         },
 
-        downloadPhoto: async function (id) {
+        downloadPhoto: async function (id, checksum) {
+            // the checksum addresses the bytes, which lets the browser cache them as immutable
+            const query = checksum ? `?v=${encodeURIComponent(checksum)}` : '';
+
             try {
-                const response = await fetch(window.app.getUrl(`download/${id}`), {
+                const response = await fetch(window.app.getUrl(`download/${id}${query}`), {
                     method: "GET"
                 });
 
@@ -129,10 +132,15 @@ function renderPhotos(photos) {
     const createRow = (photo) => {
         const row = document.createElement('tr');
 
+        const version = photo.checksum ? `&v=${encodeURIComponent(photo.checksum)}` : '';
+
         row.innerHTML = `
+                <td class="border border-gray-300 p-2 text-center">
+                    <img src="${window.app.getUrl(`download/${photo.uuid}?size=thumbnail${version}`)}" alt="" loading="lazy" class="h-12 w-12 object-cover inline-block" />
+                </td>
                 <td class="border border-gray-300 p-2">${photo.fileName}</td>
                 <td class="border border-gray-300 p-2 text-center">
-                    <a href="#" onclick="downloadPhoto('${photo.uuid}'); return false;" class="text-blue-500 hover:text-blue-700">
+                    <a href="#" onclick="downloadPhoto('${photo.uuid}', '${photo.checksum || ''}'); return false;" class="text-blue-500 hover:text-blue-700">
                         <svg class="w-6 h-6 inline-block" fill="none" stroke="currentColor" viewBox="0 0 24 24" xmlns="http://www.w3.org/2000/svg">
                             <path stroke-linecap="round" stroke-linejoin="round" stroke-width="2" d="M4 16v1a3 3 0 003 3h10a3 3 0 003-3v-1m-4-4l-4 4m0 0l-4-4m4 4V4"></path>
                         </svg>
@@ -147,9 +155,9 @@ function renderPhotos(photos) {
     container.classList.remove('hidden');
 }
 
-async function downloadPhoto(id) {
+async function downloadPhoto(id, checksum) {
     try {
-        const result = await window.app.downloadPhoto(id);
+        const result = await window.app.downloadPhoto(id, checksum);
 
         if (!result || !result.url || !result.filename) {
             alert("Failed to download file. Invalid response from server.");
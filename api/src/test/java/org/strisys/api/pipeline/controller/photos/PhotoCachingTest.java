@@ -0,0 +1,41 @@
+package org.strisys.api.pipeline.controller.photos;
+
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PhotoCachingTest {
+    @Test
+    void whenGzipListed_thenAcceptedUnlessWeightedZero() {
+        // Apply, Assert
+        assertThat(PhotoCaching.acceptsGzip("gzip")).isTrue();
+        assertThat(PhotoCaching.acceptsGzip("deflate, gzip;q=0.5")).isTrue();
+        assertThat(PhotoCaching.acceptsGzip("gzip;q=0")).isFalse();
+        assertThat(PhotoCaching.acceptsGzip("GZIP; Q=0.0")).isFalse();
+        assertThat(PhotoCaching.acceptsGzip("gzip;q=nonsense")).isFalse();
+    }
+
+    @Test
+    void whenXGzipListed_thenTreatedAsGzip() {
+        // Apply, Assert
+        assertThat(PhotoCaching.acceptsGzip("x-gzip")).isTrue();
+        assertThat(PhotoCaching.acceptsGzip("x-gzip;q=0")).isFalse();
+        assertThat(PhotoCaching.acceptsGzip("x-gzip;q=0, gzip;q=0.3")).isTrue();
+    }
+
+    @Test
+    void whenOnlyWildcardListed_thenItsWeightDecides() {
+        // Apply, Assert
+        assertThat(PhotoCaching.acceptsGzip("*")).isTrue();
+        assertThat(PhotoCaching.acceptsGzip("br, *;q=0.1")).isTrue();
+        assertThat(PhotoCaching.acceptsGzip("*;q=0")).isFalse();
+        assertThat(PhotoCaching.acceptsGzip("identity, br")).isFalse();
+        assertThat(PhotoCaching.acceptsGzip(null)).isFalse();
+    }
+
+    @Test
+    void whenGzipAndWildcardListed_thenExplicitGzipWins() {
+        // Apply, Assert
+        assertThat(PhotoCaching.acceptsGzip("gzip;q=0, *")).isFalse();
+        assertThat(PhotoCaching.acceptsGzip("*;q=0, gzip")).isTrue();
+    }
+}
@@ -0,0 +1,208 @@
+package org.strisys.api.pipeline.controller.photos;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.List;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.strisys.model.entity.Photo;
+import org.strisys.model.entity.PhotoState;
+import org.strisys.model.entity.PhotoVariant;
+import org.strisys.service.PhotoService;
+import org.strisys.service.cache.PhotoListingCache;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+public class PhotoControllerTest {
+    private static final byte[] JSON = "[]".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] GZIPPED = {31, -117, 8, 0};
+    private static final byte[] BYTES = "0123456789".getBytes(StandardCharsets.US_ASCII);
+    private static final String CHECKSUM = "84d89877f0d4041efb6bf91a16f0248f2fd573e6af05c19f96bedb9f882f7882";
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2026, 3, 14, 15, 9, 26);
+
+    private final PhotoService service = mock(PhotoService.class);
+    private MockMvc mvc;
+    private PhotoState state;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        PhotoController controller = new PhotoController(service, new ObjectMapper().findAndRegisterModules(), 100, 1000, 1000, 1000);
+        mvc = MockMvcBuilders.standaloneSetup(controller).build();
+        when(service.getListing()).thenReturn(new PhotoListingCache.Snapshot(1, "\"listing-1\"", JSON, "\"listing-1-gzip\"", GZIPPED));
+
+        state = PhotoState.createRandom();
+        state.setSize((long) BYTES.length);
+        state.setChecksum(CHECKSUM);
+        state.setVersion((short) 2);
+        state.setCreatedAt(CREATED_AT);
+        when(service.tryGet(state.getUuid())).thenReturn(Photo.create(state));
+        when(service.writeFile(eq(state.getUuid()), eq(PhotoVariant.ORIGINAL), anyLong(), anyLong(), anyLong(), any())).thenAnswer(invocation -> {
+            int offset = Math.toIntExact(invocation.<Long>getArgument(3));
+            int length = Math.toIntExact(invocation.<Long>getArgument(4));
+            invocation.<OutputStream>getArgument(5).write(BYTES, offset, length);
+            return (long) length;
+        });
+    }
+
+    private static String toHttpDate(LocalDateTime value) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.of(value, ZoneId.systemDefault()).withZoneSameInstant(ZoneId.of("GMT")));
+    }
+
+    private MockHttpServletResponse perform(RequestBuilder request) throws Exception {
+        return mvc.perform(request).andReturn().getResponse();
+    }
+
+    @Test
+    void whenListingETagMatches_thenNotModified() throws Exception {
+        // Apply
+        MockHttpServletResponse full = perform(get("/api/photos"));
+        MockHttpServletResponse current = perform(get("/api/photos").header(HttpHeaders.IF_NONE_MATCH, "\"listing-1\""));
+        MockHttpServletResponse stale = perform(get("/api/photos").header(HttpHeaders.IF_NONE_MATCH, "\"listing-0\""));
+
+        // Assert
+        assertThat(full.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(full.getHeader(HttpHeaders.ETAG)).isEqualTo("\"listing-1\"");
+        assertThat(full.getContentAsByteArray()).isEqualTo(JSON);
+        assertThat(current.getStatus()).isEqualTo(HttpStatus.NOT_MODIFIED.value());
+        assertThat(current.getContentAsByteArray()).isEmpty();
+        assertThat(stale.getStatus()).isEqualTo(HttpStatus.OK.value());
+    }
+
+    @Test
+    void whenGzipListingETagMatches_thenNotModified() throws Exception {
+        // Apply
+        MockHttpServletResponse full = perform(get("/api/photos").header(HttpHeaders.ACCEPT_ENCODING, "gzip"));
+        MockHttpServletResponse current = perform(get("/api/photos")
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"listing-1-gzip\""));
+        MockHttpServletResponse refused = perform(get("/api/photos")
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"listing-1-gzip\""));
+
+        // Assert
+        assertThat(full.getHeader(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+        assertThat(full.getHeader(HttpHeaders.ETAG)).isEqualTo("\"listing-1-gzip\"");
+        assertThat(full.getContentAsByteArray()).isEqualTo(GZIPPED);
+        assertThat(current.getStatus()).isEqualTo(HttpStatus.NOT_MODIFIED.value());
+        assertThat(refused.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(refused.getHeader(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(refused.getContentAsByteArray()).isEqualTo(JSON);
+    }
+
+    @Test
+    void whenStreamFalse_thenListedWithoutStreaming() throws Exception {
+        when(service.getPage(0L, 2)).thenReturn(List.of(Photo.create(state)));
+
+        // Apply
+        MockHttpServletResponse snapshot = perform(get("/api/photos").param("stream", "false"));
+        MockHttpServletResponse page = perform(get("/api/photos").param("stream", "false").param("limit", "2"));
+
+        // Assert
+        assertThat(snapshot.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(snapshot.getHeader(HttpHeaders.ETAG)).isEqualTo("\"listing-1\"");
+        assertThat(page.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(page.getContentAsString()).contains(state.getUuid());
+    }
+
+    @Test
+    void whenMetadataETagMatches_thenNotModified() throws Exception {
+        String etag = String.format("\"%s-v2\"", state.getUuid());
+
+        // Apply
+        MockHttpServletResponse full = perform(get("/api/photos/{id}", state.getUuid()));
+        MockHttpServletResponse current = perform(get("/api/photos/{id}", state.getUuid()).header(HttpHeaders.IF_NONE_MATCH, etag));
+        MockHttpServletResponse edited = perform(get("/api/photos/{id}", state.getUuid())
+                .header(HttpHeaders.IF_NONE_MATCH, String.format("\"%s-v1\"", state.getUuid())));
+
+        // Assert
+        assertThat(full.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(full.getHeader(HttpHeaders.ETAG)).isEqualTo(etag);
+        assertThat(current.getStatus()).isEqualTo(HttpStatus.NOT_MODIFIED.value());
+        assertThat(edited.getStatus()).isEqualTo(HttpStatus.OK.value());
+    }
+
+    @Test
+    void whenContentETagMatches_thenNotModified() throws Exception {
+        // Apply
+        MockHttpServletResponse full = perform(get("/api/photos/download/{id}", state.getUuid()));
+        MockHttpServletResponse current = perform(get("/api/photos/download/{id}", state.getUuid())
+                .header(HttpHeaders.IF_NONE_MATCH, "\"" + CHECKSUM + "\""));
+
+        // Assert
+        assertThat(full.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(full.getHeader(HttpHeaders.ETAG)).isEqualTo("\"" + CHECKSUM + "\"");
+        assertThat(full.getContentAsByteArray()).isEqualTo(BYTES);
+        assertThat(current.getStatus()).isEqualTo(HttpStatus.NOT_MODIFIED.value());
+        assertThat(current.getContentAsByteArray()).isEmpty();
+    }
+
+    @Test
+    void whenNotModifiedSince_thenNotModified() throws Exception {
+        // Apply
+        MockHttpServletResponse current = perform(get("/api/photos/download/{id}", state.getUuid())
+                .header(HttpHeaders.IF_MODIFIED_SINCE, toHttpDate(CREATED_AT)));
+        MockHttpServletResponse older = perform(get("/api/photos/download/{id}", state.getUuid())
+                .header(HttpHeaders.IF_MODIFIED_SINCE, toHttpDate(CREATED_AT.minusDays(1))));
+
+        // Assert
+        assertThat(current.getStatus()).isEqualTo(HttpStatus.NOT_MODIFIED.value());
+        assertThat(older.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(older.getContentAsByteArray()).isEqualTo(BYTES);
+    }
+
+    @Test
+    void whenIfRangeStale_thenFullContentSent() throws Exception {
+        // Apply
+        MockHttpServletResponse ranged = perform(get("/api/photos/download/{id}", state.getUuid())
+                .header(HttpHeaders.RANGE, "bytes=2-5")
+                .header(HttpHeaders.IF_RANGE, "\"" + CHECKSUM + "\""));
+        MockHttpServletResponse stale = perform(get("/api/photos/download/{id}", state.getUuid())
+                .header(HttpHeaders.RANGE, "bytes=2-5")
+                .header(HttpHeaders.IF_RANGE, "\"replaced\""));
+        MockHttpServletResponse staleDate = perform(get("/api/photos/download/{id}", state.getUuid())
+                .header(HttpHeaders.RANGE, "bytes=2-5")
+                .header(HttpHeaders.IF_RANGE, toHttpDate(CREATED_AT.minusDays(1))));
+
+        // Assert
+        assertThat(ranged.getStatus()).isEqualTo(HttpStatus.PARTIAL_CONTENT.value());
+        assertThat(ranged.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 2-5/10");
+        assertThat(ranged.getContentAsByteArray()).isEqualTo(Arrays.copyOfRange(BYTES, 2, 6));
+
+        for (MockHttpServletResponse response : new MockHttpServletResponse[] {stale, staleDate}) {
+            assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+            assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isNull();
+            assertThat(response.getContentAsByteArray()).isEqualTo(BYTES);
+        }
+    }
+
+    @Test
+    void whenVersionMatchesChecksum_thenImmutable() throws Exception {
+        // Apply
+        MockHttpServletResponse addressed = perform(get("/api/photos/download/{id}", state.getUuid()).param(PhotoCaching.VERSION_PARAM, CHECKSUM));
+        MockHttpServletResponse outdated = perform(get("/api/photos/download/{id}", state.getUuid()).param(PhotoCaching.VERSION_PARAM, "0123"));
+        MockHttpServletResponse unversioned = perform(get("/api/photos/download/{id}", state.getUuid()));
+
+        // Assert
+        assertThat(addressed.getHeader(HttpHeaders.CACHE_CONTROL)).contains("immutable", "max-age=31536000");
+        assertThat(outdated.getHeader(HttpHeaders.CACHE_CONTROL)).isEqualTo("no-cache");
+        assertThat(unversioned.getHeader(HttpHeaders.CACHE_CONTROL)).isEqualTo("no-cache");
+    }
+}
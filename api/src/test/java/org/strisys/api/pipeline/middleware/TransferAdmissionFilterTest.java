@@ -0,0 +1,163 @@
+package org.strisys.api.pipeline.middleware;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.unit.DataSize;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class TransferAdmissionFilterTest {
+    private static final long MIB = 1024 * 1024;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final FilterChain chain = mock(FilterChain.class);
+    private final List<Double> reserved = new ArrayList<>();
+
+    private TransferAdmissionFilter newFilter(int maxQueued) {
+        return new TransferAdmissionFilter(
+                new ObjectMapper().findAndRegisterModules(),
+                registry,
+                true,
+                DataSize.ofMegabytes(4),
+                DataSize.ofMegabytes(1),
+                DataSize.ofMegabytes(1),
+                DataSize.ofMegabytes(100),
+                maxQueued,
+                Duration.ofMillis(10),
+                Duration.ofSeconds(3));
+    }
+
+    private static MockHttpServletRequest createRequest(String method, String uri, long contentLength) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+
+        if (contentLength >= 0) {
+            request.setContent(new byte[Math.toIntExact(contentLength)]);
+        }
+
+        return request;
+    }
+
+    private double getInFlight() {
+        return registry.get("admission.inflight.bytes").gauge().value();
+    }
+
+    private double getRejections(String endpoint) {
+        return registry.get("admission.rejections").tag("endpoint", endpoint).counter().count();
+    }
+
+    private void recordInFlight() throws IOException, ServletException {
+        doAnswer(invocation -> reserved.add(getInFlight())).when(chain).doFilter(any(), any());
+    }
+
+    @Test
+    void whenUploadAdmitted_thenContentLengthReservedAndReleased() throws Exception {
+        TransferAdmissionFilter filter = newFilter(64);
+        recordInFlight();
+
+        // Apply
+        filter.doFilter(createRequest("POST", "/api/photos/upload", 1536 * 1024), new MockHttpServletResponse(), chain);
+
+        // Assert
+        assertThat(reserved).containsExactly(1536.0 * 1024);
+        assertThat(getInFlight()).isZero();
+    }
+
+    @Test
+    void whenImportStreamedWithoutLength_thenChargedFixedCost() throws Exception {
+        TransferAdmissionFilter filter = newFilter(64);
+        recordInFlight();
+
+        // Apply
+        filter.doFilter(createRequest("POST", "/api/addresses/import", -1), new MockHttpServletResponse(), chain);
+        filter.doFilter(createRequest("POST", "/api/addresses/import", 3 * MIB), new MockHttpServletResponse(), chain);
+        filter.doFilter(createRequest("GET", "/api/photos/download/x", -1), new MockHttpServletResponse(), chain);
+
+        // Assert
+        assertThat(reserved).containsExactly((double) MIB, (double) MIB, (double) MIB);
+        assertThat(getInFlight()).isZero();
+    }
+
+    @Test
+    void whenOtherRequest_thenBypassesBudget() throws Exception {
+        TransferAdmissionFilter filter = newFilter(64);
+        recordInFlight();
+
+        // Apply
+        filter.doFilter(createRequest("POST", "/api/photos/metadata", 8 * MIB), new MockHttpServletResponse(), chain);
+
+        // Assert
+        assertThat(reserved).containsExactly(0.0);
+    }
+
+    @Test
+    void whenBudgetSpentAndQueueFull_thenRejectedWithRetryAfter() throws Exception {
+        TransferAdmissionFilter filter = newFilter(0);
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        FilterChain inner = mock(FilterChain.class);
+
+        // the outer upload holds the whole budget while the inner one arrives
+        doAnswer(invocation -> {
+            filter.doFilter(createRequest("POST", "/api/photos/upload", MIB), rejected, inner);
+            return null;
+        }).when(chain).doFilter(any(), any());
+
+        // Apply
+        filter.doFilter(createRequest("POST", "/api/photos/upload", 4 * MIB), new MockHttpServletResponse(), chain);
+
+        // Assert
+        verify(inner, never()).doFilter(any(), any());
+        assertThat(rejected.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+        assertThat(rejected.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("3");
+        assertThat(rejected.getContentAsString()).contains("Too many transfers in progress");
+        assertThat(getRejections("upload")).isEqualTo(1.0);
+        assertThat(getInFlight()).isZero();
+    }
+
+    @Test
+    void whenQueuedPastMaxWait_thenRejected() throws Exception {
+        TransferAdmissionFilter filter = newFilter(64);
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+
+        doAnswer(invocation -> {
+            filter.doFilter(createRequest("GET", "/api/photos/download/x", -1), rejected, mock(FilterChain.class));
+            return null;
+        }).when(chain).doFilter(any(), any());
+
+        // Apply
+        filter.doFilter(createRequest("POST", "/api/photos/upload", 8 * MIB), new MockHttpServletResponse(), chain);
+
+        // Assert
+        assertThat(rejected.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+        assertThat(getRejections("download")).isEqualTo(1.0);
+        assertThat(registry.get("admission.queue.depth").gauge().value()).isZero();
+    }
+
+    @Test
+    void whenChainThrows_thenPermitsReleased() throws Exception {
+        TransferAdmissionFilter filter = newFilter(64);
+        doThrow(new ServletException("boom")).when(chain).doFilter(any(), any());
+
+        // Apply, Assert
+        assertThatThrownBy(() -> filter.doFilter(createRequest("POST", "/api/photos/upload", 2 * MIB), new MockHttpServletResponse(), chain))
+                .isInstanceOf(ServletException.class);
+        assertThat(getInFlight()).isZero();
+        assertThat(registry.get("admission.transfers.active").tag("endpoint", "upload").gauge().value()).isZero();
+    }
+}
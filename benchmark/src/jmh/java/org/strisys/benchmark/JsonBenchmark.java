@@ -0,0 +1,52 @@
+package org.strisys.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.strisys.model.entity.PhotoState;
+
+/**
+ * Serializes photo listings with a mapper configured the way Spring MVC configures its own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JsonBenchmark {
+    @Param({"10", "1000"})
+    private int size;
+
+    private ObjectMapper mapper;
+    private ObjectWriter listWriter;
+    private List<PhotoState> states;
+
+    @Setup
+    public void setUp() {
+        mapper = Jackson2ObjectMapperBuilder.json().build();
+        listWriter = mapper.writerFor(mapper.getTypeFactory().constructCollectionType(List.class, PhotoState.class));
+        states = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++) {
+            PhotoState state = PhotoState.createRandom();
+            state.setId((long) i + 1);
+            state.setSize(1024L * i);
+            state.setChecksum("0".repeat(64));
+            states.add(state);
+        }
+    }
+
+    @Benchmark
+    public byte[] writeList() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(states);
+    }
+
+    @Benchmark
+    public byte[] writeListTyped() throws JsonProcessingException {
+        return listWriter.writeValueAsBytes(states);
+    }
+}
@@ -0,0 +1,47 @@
+package org.strisys.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.strisys.model.entity.Address;
+import org.strisys.model.entity.AddressState;
+import org.strisys.model.entity.Photo;
+import org.strisys.model.entity.PhotoState;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ModelBenchmark {
+    private Photo photo;
+    private PhotoState state;
+    private AddressState address;
+
+    @Setup
+    public void setUp() {
+        state = PhotoState.createRandom();
+        state.setSize(1024L);
+        state.setChecksum("0".repeat(64));
+        photo = Photo.create(state.getCopy());
+        address = AddressState.builder()
+                .street1("123 Elm Street")
+                .city("Metropolis")
+                .state("NY")
+                .zipCode("12345")
+                .build();
+    }
+
+    @Benchmark
+    public PhotoState photoGetState() {
+        return photo.getState();
+    }
+
+    @Benchmark
+    public PhotoState photoStateGetCopy() {
+        return state.getCopy();
+    }
+
+    @Benchmark
+    public Address addressFromState() {
+        return new Address(address);
+    }
+}
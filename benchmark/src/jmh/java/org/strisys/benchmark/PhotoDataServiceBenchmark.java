@@ -0,0 +1,58 @@
+package org.strisys.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.strisys.data.PhotoDataService;
+import org.strisys.model.entity.Photo;
+import org.strisys.model.entity.PhotoState;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PhotoDataServiceBenchmark {
+    @Param({"1000"})
+    private int rows;
+
+    private ConfigurableApplicationContext context;
+    private PhotoDataService service;
+    private List<String> uuids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        service = context.getBean(PhotoDataService.class);
+        uuids = new ArrayList<>(rows);
+
+        for (int i = 0; i < rows; i++) {
+            uuids.add(service.save(PhotoState.createRandom()).getUuid());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Photo save() {
+        return service.save(PhotoState.createRandom());
+    }
+
+    @Benchmark
+    public Photo tryGet() {
+        return service.tryGet(uuids.get(ThreadLocalRandom.current().nextInt(uuids.size())));
+    }
+
+    // each benchmark runs in its own fork against a fresh in-memory database, so findAll
+    // reads the seeded rows only, never those added by save
+    @Benchmark
+    public Collection<Photo> findAll() {
+        return service.findAll();
+    }
+}
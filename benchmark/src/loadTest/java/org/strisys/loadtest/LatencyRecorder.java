@@ -0,0 +1,59 @@
+package org.strisys.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Latency samples of one operation on one worker thread, so recording never contends;
+ * {@link #merge} combines the workers' recorders for reporting.
+ */
+final class LatencyRecorder {
+    private long[] samples = new long[1024];
+    private int count;
+    private long errors;
+
+    void record(long nanos) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+
+        samples[count++] = nanos;
+    }
+
+    void error() {
+        errors++;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    long getErrors() {
+        return errors;
+    }
+
+    static LatencyRecorder merge(Iterable<LatencyRecorder> recorders) {
+        LatencyRecorder merged = new LatencyRecorder();
+
+        for (LatencyRecorder recorder : recorders) {
+            merged.samples = Arrays.copyOf(merged.samples, Math.max(merged.samples.length, merged.count + recorder.count));
+            System.arraycopy(recorder.samples, 0, merged.samples, merged.count, recorder.count);
+            merged.count += recorder.count;
+            merged.errors += recorder.errors;
+        }
+
+        Arrays.sort(merged.samples, 0, merged.count);
+        return merged;
+    }
+
+    /**
+     * Nearest-rank percentile in milliseconds; call on a {@link #merge merged} recorder.
+     */
+    double percentile(double percentile) {
+        if (count == 0) {
+            return 0.0;
+        }
+
+        int rank = (int) Math.ceil((percentile / 100.0) * count);
+        return samples[Math.max(0, Math.min(count, rank) - 1)] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,307 @@
+package org.strisys.loadtest;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.strisys.Application;
+
+/**
+ * Boots {@link Application} on a random port over in-memory H2 and drives a weighted mix
+ * of photo calls from {@code loadtest.concurrency} closed-loop workers. After
+ * {@code loadtest.warmup} seconds it measures for {@code loadtest.duration} seconds and
+ * reports throughput and latency percentiles per operation, with heap and GC figures for
+ * the window. Client and server share the JVM, so those figures include both.
+ * <p>
+ * {@code loadtest.threads} picks how the application handles requests: {@code platform},
+ * {@code virtual} ({@code spring.threads.virtual.enabled}), or {@code both} to run the
+ * same workload against each in turn and compare them.
+ * <p>
+ * Run with {@code gradle benchmark:loadTest}; see {@code benchmark/build.gradle} for the
+ * properties.
+ */
+public final class LoadTest {
+    enum Operation {
+        UPLOAD, LIST, GET, DOWNLOAD, DELETE
+    }
+
+    private final int concurrency = Integer.getInteger("loadtest.concurrency", 16);
+    private final int warmupSeconds = Integer.getInteger("loadtest.warmup", 5);
+    private final int durationSeconds = Integer.getInteger("loadtest.duration", 30);
+    private final int seedPhotos = Integer.getInteger("loadtest.seed", 50);
+    private final int imageEdge = Integer.getInteger("loadtest.image-edge", 256);
+    private final EnumMap<Operation, Integer> mix = parseMix(System.getProperty("loadtest.mix", "upload=10,list=15,get=35,download=35,delete=5"));
+
+    private final List<String> ids = new ArrayList<>();
+    private volatile boolean measuring;
+    private volatile boolean running = true;
+
+    public static void main(String[] args) throws Exception {
+        String threads = System.getProperty("loadtest.threads", "platform").toLowerCase(Locale.ROOT);
+        List<String> modes = threads.equals("both") ? List.of("platform", "virtual") : List.of(threads);
+        Path resultsFile = Path.of(System.getProperty("loadtest.results", "build/results/loadtest/results.json"));
+        Map<String, Map<String, Object>> reports = new LinkedHashMap<>();
+
+        for (String mode : modes) {
+            if (!mode.equals("platform") && !mode.equals("virtual")) {
+                throw new IllegalArgumentException("loadtest.threads must be platform, virtual or both but was " + threads);
+            }
+
+            ConfigurableApplicationContext context = SpringApplication.run(Application.class,
+                    "--server.port=0",
+                    "--spring.threads.virtual.enabled=" + mode.equals("virtual"),
+                    "--spring.datasource.url=jdbc:h2:mem:loadtest-" + mode + ";DB_CLOSE_DELAY=-1",
+                    "--spring.jpa.show-sql=false",
+                    "--logging.level.root=WARN",
+                    "--logging.level.org.hibernate.SQL=WARN",
+                    "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN");
+
+            try {
+                int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+                System.out.printf("%n== %s threads ==%n", mode);
+                reports.put(mode, new LoadTest().run(port));
+            } finally {
+                context.close();
+            }
+
+            System.gc();
+        }
+
+        if (reports.size() > 1) {
+            System.out.printf("%n%-9s %11s %11s%n", "mode", "ops/s", "p99 get ms");
+
+            reports.forEach((mode, report) -> System.out.printf("%-9s %11.1f %11.2f%n", mode,
+                    (Double) report.get("throughput"), getP99(report, Operation.GET)));
+        }
+
+        Files.createDirectories(resultsFile.toAbsolutePath().getParent());
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(resultsFile.toFile(), reports);
+        System.out.println("Results written to " + resultsFile.toAbsolutePath());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static double getP99(Map<String, Object> report, Operation operation) {
+        Map<String, Object> operations = (Map<String, Object>) report.get("operations");
+        Map<String, Object> row = (Map<String, Object>) operations.get(operation.name().toLowerCase(Locale.ROOT));
+
+        return (Double) row.get("p99");
+    }
+
+    private Map<String, Object> run(int port) throws Exception {
+        PhotoApiClient client = new PhotoApiClient(port, imageEdge);
+
+        for (int i = 0; i < seedPhotos; i++) {
+            ids.add(client.upload());
+        }
+
+        System.out.printf("Application on port %d; %d workers, %ds warm-up, %ds measured, mix %s%n",
+                port, concurrency, warmupSeconds, durationSeconds, mix);
+
+        List<EnumMap<Operation, LatencyRecorder>> recorders = new ArrayList<>(concurrency);
+        CountDownLatch done = new CountDownLatch(concurrency);
+
+        for (int i = 0; i < concurrency; i++) {
+            EnumMap<Operation, LatencyRecorder> own = new EnumMap<>(Operation.class);
+            Arrays.stream(Operation.values()).forEach(operation -> own.put(operation, new LatencyRecorder()));
+            recorders.add(own);
+
+            Thread worker = new Thread(() -> {
+                try {
+                    work(client, own);
+                } finally {
+                    done.countDown();
+                }
+            }, "load-" + i);
+            worker.setDaemon(true);
+            worker.start();
+        }
+
+        TimeUnit.SECONDS.sleep(warmupSeconds);
+
+        System.gc();
+        List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .toList();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+        long[] gcBefore = getGcTotals();
+        long start = System.nanoTime();
+        measuring = true;
+
+        TimeUnit.SECONDS.sleep(durationSeconds);
+
+        measuring = false;
+        double elapsed = (System.nanoTime() - start) / 1_000_000_000.0;
+        long[] gcAfter = getGcTotals();
+        running = false;
+        done.await(30, TimeUnit.SECONDS);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        Map<String, Object> operations = new LinkedHashMap<>();
+        long total = 0;
+
+        System.out.printf("%n%-9s %9s %7s %9s %9s %9s %9s %9s%n", "operation", "count", "errors", "ops/s", "p50 ms", "p95 ms", "p99 ms", "max ms");
+
+        for (Operation operation : Operation.values()) {
+            LatencyRecorder merged = LatencyRecorder.merge(recorders.stream().map(own -> own.get(operation)).toList());
+            total += merged.getCount();
+
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("count", merged.getCount());
+            row.put("errors", merged.getErrors());
+            row.put("throughput", merged.getCount() / elapsed);
+            row.put("p50", merged.percentile(50));
+            row.put("p95", merged.percentile(95));
+            row.put("p99", merged.percentile(99));
+            row.put("max", merged.percentile(100));
+            operations.put(operation.name().toLowerCase(Locale.ROOT), row);
+
+            System.out.printf("%-9s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f%n", operation.name().toLowerCase(Locale.ROOT),
+                    merged.getCount(), merged.getErrors(), merged.getCount() / elapsed,
+                    merged.percentile(50), merged.percentile(95), merged.percentile(99), merged.percentile(100));
+        }
+
+        long heapUsed = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        long heapPeak = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+        long heapMax = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getMax();
+
+        Map<String, Object> jvm = new LinkedHashMap<>();
+        jvm.put("heapUsedBytes", heapUsed);
+        jvm.put("heapPeakBytes", heapPeak);
+        jvm.put("heapMaxBytes", heapMax);
+        jvm.put("gcCount", gcAfter[0] - gcBefore[0]);
+        jvm.put("gcTimeMillis", gcAfter[1] - gcBefore[1]);
+
+        System.out.printf("%-9s %9d %7s %9.1f%n", "total", total, "", total / elapsed);
+        System.out.printf("%nheap used %d MB, peak %d MB, max %d MB; %d collections, %d ms in GC%n",
+                heapUsed >> 20, heapPeak >> 20, heapMax >> 20, gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1]);
+
+        report.put("concurrency", concurrency);
+        report.put("durationSeconds", elapsed);
+        report.put("mix", mix);
+        report.put("throughput", total / elapsed);
+        report.put("operations", operations);
+        report.put("jvm", jvm);
+
+        return report;
+    }
+
+    private void work(PhotoApiClient client, EnumMap<Operation, LatencyRecorder> recorders) {
+        int weights = mix.values().stream().mapToInt(Integer::intValue).sum();
+
+        while (running) {
+            Operation operation = pick(ThreadLocalRandom.current().nextInt(weights));
+            String id = (operation == Operation.UPLOAD) ? null : takeId(operation == Operation.DELETE);
+
+            if ((operation != Operation.UPLOAD) && (operation != Operation.LIST) && (id == null)) {
+                operation = Operation.UPLOAD;
+            }
+
+            long start = System.nanoTime();
+
+            try {
+                switch (operation) {
+                    case UPLOAD -> addId(client.upload());
+                    case LIST -> client.list(100);
+                    case GET -> client.get(id);
+                    case DOWNLOAD -> client.download(id);
+                    case DELETE -> client.delete(id);
+                }
+
+                if (measuring) {
+                    recorders.get(operation).record(System.nanoTime() - start);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException | RuntimeException e) {
+                if (measuring) {
+                    recorders.get(operation).error();
+                }
+            }
+        }
+    }
+
+    private Operation pick(int ticket) {
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            ticket -= entry.getValue();
+
+            if (ticket < 0) {
+                return entry.getKey();
+            }
+        }
+
+        return Operation.LIST;
+    }
+
+    private synchronized void addId(String id) {
+        ids.add(id);
+    }
+
+    // deletes take the id out of the pool so no other worker reads a photo that is going away
+    private synchronized String takeId(boolean remove) {
+        if (ids.isEmpty()) {
+            return null;
+        }
+
+        int index = ThreadLocalRandom.current().nextInt(ids.size());
+
+        if (!remove) {
+            return ids.get(index);
+        }
+
+        String id = ids.get(index);
+        ids.set(index, ids.get(ids.size() - 1));
+        ids.remove(ids.size() - 1);
+
+        return id;
+    }
+
+    private static long[] getGcTotals() {
+        long count = 0;
+        long time = 0;
+
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+            time += Math.max(0, gc.getCollectionTime());
+        }
+
+        return new long[] {count, time};
+    }
+
+    private static EnumMap<Operation, Integer> parseMix(String value) {
+        EnumMap<Operation, Integer> weights = new EnumMap<>(Operation.class);
+
+        for (String entry : value.split(",")) {
+            String[] pair = entry.trim().split("=");
+
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Expected operation=weight but found " + entry);
+            }
+
+            int weight = Integer.parseInt(pair[1].trim());
+
+            if (weight > 0) {
+                weights.put(Operation.valueOf(pair[0].trim().toUpperCase(Locale.ROOT)), weight);
+            }
+        }
+
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("loadtest.mix gives no operation a weight");
+        }
+
+        return weights;
+    }
+}
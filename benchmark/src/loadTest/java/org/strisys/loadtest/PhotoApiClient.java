@@ -0,0 +1,109 @@
+package org.strisys.loadtest;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.imageio.ImageIO;
+
+/**
+ * Thin blocking client for the {@code PhotoController} routes the load test drives.
+ * Response bodies are drained and discarded, except the uuid of an upload.
+ */
+final class PhotoApiClient {
+    private static final Pattern UUID_FIELD = Pattern.compile("\"uuid\"\\s*:\\s*\"([^\"]+)\"");
+
+    private final HttpClient http;
+    private final URI base;
+    private final byte[] image;
+
+    PhotoApiClient(int port, int imageEdge) {
+        this.http = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        this.base = URI.create("http://localhost:" + port + "/api/photos/");
+        this.image = createImage(imageEdge);
+    }
+
+    String upload() throws IOException, InterruptedException {
+        String boundary = UUID.randomUUID().toString();
+        ByteArrayOutputStream body = new ByteArrayOutputStream(image.length + 256);
+        body.write(("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"data\"; filename=\"load.png\"\r\n"
+                + "Content-Type: image/png\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        body.write(image);
+        body.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+
+        HttpRequest request = HttpRequest.newBuilder(base.resolve("upload"))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build();
+
+        HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString());
+        Matcher matcher = UUID_FIELD.matcher(response.body());
+
+        if (!matcher.find()) {
+            throw new IOException("Upload response has no uuid");
+        }
+
+        return matcher.group(1);
+    }
+
+    void list(int limit) throws IOException, InterruptedException {
+        send(HttpRequest.newBuilder(URI.create(base + "?limit=" + limit)).GET().build(), HttpResponse.BodyHandlers.discarding());
+    }
+
+    void get(String uuid) throws IOException, InterruptedException {
+        send(HttpRequest.newBuilder(base.resolve(uuid)).GET().build(), HttpResponse.BodyHandlers.discarding());
+    }
+
+    void download(String uuid) throws IOException, InterruptedException {
+        send(HttpRequest.newBuilder(base.resolve("download/" + uuid)).GET().build(), HttpResponse.BodyHandlers.discarding());
+    }
+
+    void delete(String uuid) throws IOException, InterruptedException {
+        send(HttpRequest.newBuilder(base.resolve(uuid)).DELETE().build(), HttpResponse.BodyHandlers.discarding());
+    }
+
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler) throws IOException, InterruptedException {
+        HttpResponse<T> response = http.send(request, handler);
+
+        if (response.statusCode() >= 400) {
+            throw new IOException(request.method() + " " + request.uri() + " returned " + response.statusCode());
+        }
+
+        return response;
+    }
+
+    private static byte[] createImage(int edge) {
+        BufferedImage image = new BufferedImage(edge, edge, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+
+        try {
+            graphics.setPaint(new GradientPaint(0, 0, Color.ORANGE, edge, edge, Color.BLUE));
+            graphics.fillRect(0, 0, edge, edge);
+        } finally {
+            graphics.dispose();
+        }
+
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(image, "png", out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
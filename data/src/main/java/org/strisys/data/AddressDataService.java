@@ -1,6 +1,9 @@
 package org.strisys.data;
 
+import com.google.common.collect.Lists;
+import io.micrometer.core.annotation.Timed;
 import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
@@ -8,18 +11,40 @@ import org.springframework.transaction.annotation.Transactional;
 import org.strisys.model.entity.Address;
 import org.strisys.model.entity.AddressState;
 import org.strisys.data.rdms.AddressRepository;
+import org.strisys.model.id.AddressFingerprint;
+import org.strisys.model.id.TimeOrderedUuid;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 
+@Timed(DataServiceMetrics.TIMER)
 @Service
 public class AddressDataService {
     private final AddressRepository repo;
     private final EntityManager em;
+    private final int batchSize;
+    private final int lookupChunkSize;
+
+    public record Stored(Address address, boolean created) {
+    }
+
+    public AddressDataService(
+            AddressRepository repo,
+            EntityManager em,
+            @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}") int batchSize,
+            @Value("${data.lookup.chunk-size:500}") int lookupChunkSize) {
 
-    public AddressDataService(AddressRepository repo, EntityManager em) {
         this.repo = repo;
         this.em = em;
+        this.batchSize = batchSize;
+        this.lookupChunkSize = lookupChunkSize;
     }
 
     @Transactional(propagation = Propagation.REQUIRES_NEW)
@@ -32,7 +57,96 @@ public class AddressDataService {
         return managed;
     }
 
+    /**
+     * Returns the oldest stored address with the same {@link AddressFingerprint}, found
+     * with one lookup on the fingerprint index, and only inserts when there is none.
+     * Two concurrent calls for a new address can both insert; later calls then resolve
+     * to the older row.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public Stored createOrGet(AddressState state) {
+        Address candidate = new Address(state);
+        Optional<Address> existing = repo.findFirstByFingerprintOrderByIdAsc(AddressFingerprint.of(candidate));
+
+        if (existing.isPresent()) {
+            return new Stored(existing.get(), false);
+        }
+
+        Address managed = repo.save(candidate);
+        repo.flush();
+
+        return new Stored(managed, true);
+    }
+
+    /**
+     * Inserts the states in one transaction, in JDBC batches of
+     * {@code hibernate.jdbc.batch_size}, clearing the persistence context after each
+     * batch so its size stays constant however many states are passed.
+     *
+     * @return the stored addresses, detached
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public List<Address> saveAll(List<AddressState> states) {
+        List<Address> saved = new ArrayList<>(states.size());
+
+        for (List<AddressState> chunk : Lists.partition(states, batchSize)) {
+            List<Address> addresses = new ArrayList<>(chunk.size());
+
+            for (AddressState state : chunk) {
+                addresses.add(new Address(state));
+            }
+
+            saved.addAll(repo.saveAll(addresses));
+            repo.flush();
+            em.clear();
+        }
+
+        return saved;
+    }
+
+    @Transactional(readOnly = true)
+    public long count() {
+        return repo.count();
+    }
+
+    /**
+     * Hands every address to {@code consumer} as it comes off the JDBC cursor, detaching
+     * each row afterwards so the persistence context stays empty however large the table.
+     */
+    @Transactional(readOnly = true)
+    public void forEach(Consumer<Address> consumer) {
+        try (Stream<Address> values = repo.streamAll()) {
+            values.forEach(address -> {
+                consumer.accept(address);
+                em.detach(address);
+            });
+        }
+    }
+
+    /**
+     * Resolves many identifiers with one {@code IN} query per {@code data.lookup.chunk-size}
+     * of them; invalid and unknown identifiers are simply absent from the result.
+     *
+     * @return the addresses found, keyed by canonical (lower case) UUID
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Address> findAllByUUID(Collection<String> values) {
+        List<String> valid = values.stream().filter(TimeOrderedUuid::isValid).map(TimeOrderedUuid::canonical).distinct().toList();
+        Map<String, Address> found = new HashMap<>(valid.size());
+
+        for (List<String> chunk : Lists.partition(valid, lookupChunkSize)) {
+            repo.findByUuidIn(chunk).forEach(address -> found.put(address.getUUID(), address));
+        }
+
+        return found;
+    }
+
+    @Transactional(readOnly = true)
     public Optional<Address> findByUUID(String value) {
+        if (!TimeOrderedUuid.isValid(value)) {
+            return Optional.empty();
+        }
+
         return this.repo.findByUuid(value);
     }
 }
@@ -0,0 +1,13 @@
+package org.strisys.data;
+
+/**
+ * Data services are annotated with {@code @Timed(TIMER)}; an application that registers
+ * Micrometer's {@code TimedAspect} gets one timer per call, tagged with the class and
+ * method, so database time can be told apart from the rest of a request.
+ */
+public final class DataServiceMetrics {
+    public static final String TIMER = "data.service";
+
+    private DataServiceMetrics() {
+    }
+}
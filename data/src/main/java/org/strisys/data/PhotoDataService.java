@@ -1,34 +1,116 @@
 package org.strisys.data;
 
+import com.google.common.collect.Lists;
+import io.micrometer.core.annotation.Timed;
 import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.strisys.data.rdms.PhotoFileRepository;
 import org.strisys.data.rdms.PhotoRepository;
+import org.strisys.data.rdms.PhotoTombstoneRepository;
 import org.strisys.model.entity.PhotoState;
 import org.strisys.model.entity.Photo;
+import org.strisys.model.entity.PhotoUpload;
+import org.strisys.model.entity.PhotoVariant;
+import org.strisys.model.id.TimeOrderedUuid;
 
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+@Timed(DataServiceMetrics.TIMER)
 @Service
 public class PhotoDataService {
     private final PhotoRepository repo;
+    private final PhotoFileRepository files;
+    private final PhotoTombstoneRepository tombstones;
     private final EntityManager em;
+    private final int batchSize;
+    private final int lookupChunkSize;
+
+    public PhotoDataService(
+            PhotoRepository repo,
+            PhotoFileRepository files,
+            PhotoTombstoneRepository tombstones,
+            EntityManager em,
+            @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}") int batchSize,
+            @Value("${data.lookup.chunk-size:500}") int lookupChunkSize) {
 
-    public PhotoDataService(PhotoRepository repo, EntityManager em) {
         this.repo = repo;
+        this.files = files;
+        this.tombstones = tombstones;
         this.em = em;
+        this.batchSize = batchSize;
+        this.lookupChunkSize = lookupChunkSize;
     }
 
+    @Transactional(readOnly = true)
     public Photo tryGet(String id) {
+        if (!TimeOrderedUuid.isValid(id)) {
+            return Photo.getNull();
+        }
+
         Optional<PhotoState> val = repo.findByUuid(id);
         return val.map(Photo::create).orElse(Photo.getNull());
     }
 
+    /**
+     * Resolves many identifiers with one {@code IN} query per {@code data.lookup.chunk-size}
+     * of them; invalid and unknown identifiers are simply absent from the result.
+     *
+     * @return the photos found, keyed by canonical (lower case) UUID
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Photo> findAllByUuid(Collection<String> ids) {
+        List<String> valid = ids.stream().filter(TimeOrderedUuid::isValid).map(TimeOrderedUuid::canonical).distinct().toList();
+        Map<String, Photo> found = new HashMap<>(valid.size());
+
+        for (List<String> chunk : Lists.partition(valid, lookupChunkSize)) {
+            repo.findByUuidIn(chunk).forEach(state -> found.put(state.getUuid(), Photo.create(state)));
+        }
+
+        return found;
+    }
+
+    @Transactional(readOnly = true)
+    public long writeFile(String uuid, long offset, long length, OutputStream out) {
+        return writeFile(uuid, PhotoVariant.ORIGINAL, offset, length, out);
+    }
+
+    @Transactional(readOnly = true)
+    public long writeFile(String uuid, PhotoVariant variant, long offset, long length, OutputStream out) {
+        return files.copyTo(uuid, variant, offset, length, out);
+    }
+
+    @Transactional(readOnly = true)
+    public OptionalLong getVariantLength(String uuid, PhotoVariant variant) {
+        return files.findLength(uuid, variant);
+    }
+
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void saveVariant(String uuid, PhotoVariant variant, InputStream in, long length) {
+        files.write(uuid, variant, in, length);
+    }
+
     @Transactional(propagation = Propagation.REQUIRES_NEW)
     public Photo save(String fileName) {
         return save(fileName, new byte[0], "");
@@ -36,16 +118,73 @@ public class PhotoDataService {
 
     @Transactional(propagation = Propagation.REQUIRES_NEW)
     public Photo save(String fileName, byte[] bytes, String contentType) {
+        return save(new PhotoUpload(fileName, contentType, bytes.length, new ByteArrayResource(bytes)));
+    }
+
+    /**
+     * Stores the bytes first, so the metadata row is written once with its size and
+     * checksum already known. Bytes already stored under the same checksum are shared
+     * rather than written again.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public Photo save(PhotoUpload upload) {
+        PhotoFileRepository.Content content = files.writeOriginal(upload);
+
         PhotoState state = PhotoState.builder()
-                .fileName(fileName)
-                .uuid(UUID.randomUUID().toString())
-                .file(bytes)
-                .contentType(contentType)
+                .fileName(upload.fileName())
+                .uuid(TimeOrderedUuid.next())
+                .contentType(upload.contentType())
+                .size(content.size())
+                .checksum(content.checksum())
                 .build();
 
         return save(state);
     }
 
+    /**
+     * Persists many uploads in one transaction. Bytes and metadata are each written in
+     * JDBC batches of {@code hibernate.jdbc.batch_size}, and the persistence context is
+     * cleared between chunks so it never holds more than one batch.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public List<Photo> saveAll(List<PhotoUpload> uploads) {
+        return saveAll(uploads.stream().map(upload -> TimeOrderedUuid.next()).toList(), uploads);
+    }
+
+    /**
+     * As {@link #saveAll(List)}, under identifiers the caller assigned up front.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public List<Photo> saveAll(List<String> uuids, List<PhotoUpload> uploads) {
+        List<Photo> saved = new ArrayList<>(uploads.size());
+
+        for (int offset = 0; offset < uploads.size(); offset += batchSize) {
+            int end = Math.min(offset + batchSize, uploads.size());
+            List<PhotoUpload> chunk = uploads.subList(offset, end);
+            List<String> chunkUuids = uuids.subList(offset, end);
+            List<PhotoFileRepository.Content> contents = files.writeAll(chunk);
+            List<PhotoState> states = new ArrayList<>(chunk.size());
+
+            for (int i = 0; i < chunk.size(); i++) {
+                states.add(PhotoState.builder()
+                        .fileName(chunk.get(i).fileName())
+                        .uuid(chunkUuids.get(i))
+                        .contentType(chunk.get(i).contentType())
+                        .size(contents.get(i).size())
+                        .checksum(contents.get(i).checksum())
+                        .build());
+            }
+
+            List<PhotoState> persisted = repo.saveAll(states);
+            repo.flush();
+            em.clear();
+
+            persisted.forEach(state -> saved.add(Photo.create(state)));
+        }
+
+        return saved;
+    }
+
     @Transactional(propagation = Propagation.REQUIRES_NEW)
     public Photo save(PhotoState state) {
         PhotoState saved = repo.save(state);
@@ -54,23 +193,98 @@ public class PhotoDataService {
         return Photo.create(saved);
     }
 
-    public Photo remove(String uuid) {
-        Photo original = this.tryGet(uuid);
-
-        if (original == null) {
+    /**
+     * Edits file name and content type, whichever are non-null, with one update of those
+     * columns guarded by the {@code @Version} the caller read; the bytes are not touched.
+     *
+     * @return the updated photo, or the null photo when there is none
+     * @throws OptimisticLockingFailureException when the photo has moved past {@code version}
+     */
+    @Transactional
+    public Photo updateMetadata(String uuid, String fileName, String contentType, short version) {
+        if (!TimeOrderedUuid.isValid(uuid)) {
             return Photo.getNull();
         }
 
+        short next = (short) (version + 1);
+        int updated = repo.updateMetadata(TimeOrderedUuid.canonical(uuid), fileName, contentType, version, next, LocalDateTime.now());
+        Photo current = this.tryGet(uuid);
+
+        if ((updated == 0) && !current.getIsNull()) {
+            throw new OptimisticLockingFailureException(String.format(
+                    "Photo %s is at version %d, not %d", current.getUuid(), current.getState().getVersion(), version));
+        }
+
+        return current;
+    }
+
+    /**
+     * Tombstones the photo with a single update; its row and bytes stay until
+     * {@link #purge} but are invisible to every read from here on.
+     *
+     * @return the photo as it was, or the null photo when there was none to delete
+     */
+    @Transactional
+    public Photo remove(String uuid) {
+        Photo original = this.tryGet(uuid);
+
         if (original.getIsNull()) {
             return original;
         }
 
-        repo.deleteByUuid(uuid);
-        repo.flush();
+        return (repo.markDeleted(List.of(uuid), LocalDateTime.now()) > 0) ? original : Photo.getNull();
+    }
+
+    /**
+     * Tombstones many photos with one update per {@code data.lookup.chunk-size} of them.
+     *
+     * @return canonical (lower case) UUIDs of the photos tombstoned
+     */
+    @Transactional
+    public Set<String> removeAll(Collection<String> ids) {
+        List<String> valid = ids.stream().filter(TimeOrderedUuid::isValid).map(TimeOrderedUuid::canonical).distinct().toList();
+        Set<String> removed = new HashSet<>(valid.size());
+        LocalDateTime now = LocalDateTime.now();
 
-        return original;
+        for (List<String> chunk : Lists.partition(valid, lookupChunkSize)) {
+            List<String> live = repo.findUuidByUuidIn(chunk);
+
+            if (!live.isEmpty()) {
+                repo.markDeleted(live, now);
+                removed.addAll(live);
+            }
+        }
+
+        return removed;
+    }
+
+    /**
+     * Hard-deletes up to {@code limit} photos tombstoned before {@code deletedBefore}:
+     * their rows, their variants and their references to shared originals, each in one
+     * JDBC batch. The rows are claimed with a skip-locked read first, so concurrent
+     * purgers never release the same reference twice.
+     *
+     * @return the number of photos purged
+     */
+    @Transactional
+    public int purge(LocalDateTime deletedBefore, int limit) {
+        List<PhotoTombstoneRepository.Tombstone> claimed = tombstones.claimDeletedBefore(deletedBefore, limit);
+
+        if (claimed.isEmpty()) {
+            return 0;
+        }
+
+        tombstones.deleteAll(claimed);
+        files.deleteAll(claimed.stream().map(PhotoTombstoneRepository.Tombstone::uuid).toList());
+        files.releaseAll(claimed.stream()
+                .map(PhotoTombstoneRepository.Tombstone::checksum)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toMap(Function.identity(), checksum -> 1, Integer::sum)));
+
+        return claimed.size();
     }
 
+    @Transactional(readOnly = true)
     public Collection<Photo> findAll() {
         List<PhotoState> values = repo.findAll();
 
@@ -78,4 +292,28 @@ public class PhotoDataService {
                 .map(Photo::create)
                 .collect(Collectors.toList());
     }
+
+    /**
+     * Keyset page: rows with an id greater than {@code afterId}, in id order.
+     */
+    @Transactional(readOnly = true)
+    public List<Photo> findPage(long afterId, int limit) {
+        return repo.findByIdGreaterThanAndDeletedAtIsNullOrderByIdAsc(afterId, Limit.of(limit)).stream()
+                .map(Photo::create)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Hands every photo to {@code consumer} as it comes off the JDBC cursor, detaching
+     * each row afterwards so the persistence context stays empty however large the table.
+     */
+    @Transactional(readOnly = true)
+    public void forEach(Consumer<Photo> consumer) {
+        try (Stream<PhotoState> values = repo.streamAll()) {
+            values.forEach(state -> {
+                consumer.accept(Photo.create(state));
+                em.detach(state);
+            });
+        }
+    }
 }
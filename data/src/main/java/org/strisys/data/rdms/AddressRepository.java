@@ -1,12 +1,27 @@
 package org.strisys.data.rdms;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.strisys.model.entity.Address;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface AddressRepository extends JpaRepository<Address, Long> {
     Optional<Address> findByUuid(String value);
-}
\ No newline at end of file
+    List<Address> findByUuidIn(Collection<String> values);
+
+    // served by idx_address_fingerprint (fingerprint, id)
+    Optional<Address> findFirstByFingerprintOrderByIdAsc(String fingerprint);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "256"))
+    @Query("select a from Address a order by a.id")
+    Stream<Address> streamAll();
+}
@@ -0,0 +1,345 @@
+package org.strisys.data.rdms;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Blob;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Repository;
+import org.strisys.model.entity.PhotoUpload;
+import org.strisys.model.entity.PhotoVariant;
+import org.strisys.model.id.TimeOrderedUuid;
+
+/**
+ * Binary store for photo bytes. Originals are content addressed: each distinct SHA-256
+ * is stored once in {@code photo_blob} with a count of the photos referencing it, and is
+ * reached through the photo's {@code checksum}. Derived variants are kept per photo UUID
+ * (as its 16 bytes) and {@link PhotoVariant} in {@code photo_content}. Bytes are moved
+ * between streams and the JDBC {@link Blob} so neither an upload nor a download
+ * materializes the whole file; at most {@link #BUFFER_SIZE} bytes are held per call.
+ * Bytes of a tombstoned photo are no longer read, and are removed when it is purged.
+ * <p>
+ * Statements that can collide with a concurrent upload of the same bytes run in a
+ * savepoint, so the duplicate key rolls back only that statement; on PostgreSQL a failed
+ * statement would otherwise abort the whole transaction.
+ */
+@Repository
+public class PhotoFileRepository {
+    public static final int BUFFER_SIZE = 8192;
+
+    // rounds of reference-or-insert before giving up on a checksum other uploads keep racing for
+    private static final int MAX_STORE_ATTEMPTS = 3;
+
+    private final JdbcTemplate jdbc;
+
+    public record Content(long size, String checksum) {
+    }
+
+    public PhotoFileRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    public OptionalLong findLength(String uuid, PhotoVariant variant) {
+        List<Long> values = (variant == PhotoVariant.ORIGINAL)
+                ? jdbc.queryForList(
+                        "SELECT OCTET_LENGTH(b.file) FROM photo p JOIN photo_blob b ON b.checksum = p.checksum WHERE p.uuid = ? AND p.deleted_at IS NULL",
+                        Long.class, TimeOrderedUuid.toBytes(uuid))
+                : jdbc.queryForList(
+                        "SELECT OCTET_LENGTH(c.file) FROM photo_content c JOIN photo p ON p.uuid = c.photo_uuid WHERE c.photo_uuid = ? AND c.variant = ? AND p.deleted_at IS NULL",
+                        Long.class, TimeOrderedUuid.toBytes(uuid), variant.getKey());
+
+        if (values.isEmpty()) {
+            return OptionalLong.empty();
+        }
+
+        Long length = values.get(0);
+        return OptionalLong.of((length != null) ? length : 0L);
+    }
+
+    public long copyTo(String uuid, PhotoVariant variant, long offset, long length, OutputStream out) {
+        if (length <= 0) {
+            return 0L;
+        }
+
+        ResultSetExtractor<Long> extractor = rs -> {
+            if (!rs.next()) {
+                return 0L;
+            }
+
+            Blob blob = rs.getBlob(1);
+
+            if (blob == null) {
+                return 0L;
+            }
+
+            try (InputStream in = blob.getBinaryStream(offset + 1, length)) {
+                return copy(in, out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                blob.free();
+            }
+        };
+
+        Long copied = (variant == PhotoVariant.ORIGINAL)
+                ? jdbc.query("SELECT b.file FROM photo p JOIN photo_blob b ON b.checksum = p.checksum WHERE p.uuid = ? AND p.deleted_at IS NULL",
+                        extractor, TimeOrderedUuid.toBytes(uuid))
+                : jdbc.query("SELECT c.file FROM photo_content c JOIN photo p ON p.uuid = c.photo_uuid WHERE c.photo_uuid = ? AND c.variant = ? AND p.deleted_at IS NULL",
+                        extractor, TimeOrderedUuid.toBytes(uuid), variant.getKey());
+
+        return (copied != null) ? copied : 0L;
+    }
+
+    /**
+     * Stores one original. The content is re-openable, so it is hashed (SHA-256) first:
+     * bytes already in the store only gain a reference and are never written again, and
+     * new bytes are streamed into a blob keyed by their checksum. The declared length is
+     * not trusted; the blob is written with the length counted while hashing.
+     */
+    public Content writeOriginal(PhotoUpload upload) {
+        Content content;
+
+        try {
+            content = hash(upload);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        store(content.checksum(), 1, withLength(upload, content));
+        return content;
+    }
+
+    /**
+     * Streams the bytes of a derived variant into a new content row.
+     */
+    public Content write(String uuid, PhotoVariant variant, InputStream in, long length) {
+        if (!variant.isDerived()) {
+            throw new IllegalArgumentException("Originals are written with writeOriginal");
+        }
+
+        CountingInputStream counting = new CountingInputStream(in);
+        HashingInputStream hashing = new HashingInputStream(Hashing.sha256(), counting);
+
+        jdbc.update("INSERT INTO photo_content (photo_uuid, variant, file) VALUES (?, ?, ?)", ps -> {
+            ps.setBytes(1, TimeOrderedUuid.toBytes(uuid));
+            ps.setString(2, variant.getKey());
+
+            if (length >= 0) {
+                ps.setBinaryStream(3, hashing, length);
+            } else {
+                ps.setBinaryStream(3, hashing);
+            }
+        });
+
+        return new Content(counting.getCount(), hashing.hash().toString());
+    }
+
+    /**
+     * Stores a chunk of originals. Upload content is re-openable, so every file is hashed
+     * first and only checksums not yet in the store are written, in a single JDBC batch;
+     * duplicates, within the chunk or of earlier uploads, only add references. Every
+     * stream of the batch is open while it executes, so callers should keep chunks to
+     * the batch size.
+     */
+    public List<Content> writeAll(List<PhotoUpload> uploads) {
+        List<Content> contents = new ArrayList<>(uploads.size());
+        Map<String, Integer> references = new LinkedHashMap<>();
+        Map<String, PhotoUpload> sources = new LinkedHashMap<>();
+
+        try {
+            for (PhotoUpload upload : uploads) {
+                Content content = hash(upload);
+                contents.add(content);
+                references.merge(content.checksum(), 1, Integer::sum);
+                sources.putIfAbsent(content.checksum(), withLength(upload, content));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        references.entrySet().removeIf(entry -> reference(entry.getKey(), entry.getValue()));
+
+        if (!references.isEmpty()) {
+            insertAll(references, sources);
+        }
+
+        return contents;
+    }
+
+    private void insertAll(Map<String, Integer> references, Map<String, PhotoUpload> sources) {
+        List<String> checksums = new ArrayList<>(references.keySet());
+
+        if (tryUnique(() -> insertBatch(checksums, references, sources))) {
+            return;
+        }
+
+        // a concurrent upload stored some of the same bytes first; reference those instead
+        for (String checksum : checksums) {
+            store(checksum, references.get(checksum), sources.get(checksum));
+        }
+    }
+
+    /**
+     * Adds {@code count} references to the blob with the checksum, inserting it from
+     * {@code source} when there is none. A concurrent upload may insert the same bytes
+     * first, or release the last reference to them in between, so both steps are retried
+     * a few times.
+     *
+     * @throws ConcurrencyFailureException when neither step succeeds
+     */
+    private void store(String checksum, int count, PhotoUpload source) {
+        for (int attempt = 0; attempt < MAX_STORE_ATTEMPTS; attempt++) {
+            if (reference(checksum, count)
+                    || tryUnique(() -> insertBatch(List.of(checksum), Map.of(checksum, count), Map.of(checksum, source)))) {
+                return;
+            }
+        }
+
+        throw new ConcurrencyFailureException(String.format("Could not store or reference blob %s", checksum));
+    }
+
+    private void insertBatch(List<String> checksums, Map<String, Integer> references, Map<String, PhotoUpload> sources) {
+        List<InputStream> streams = new ArrayList<>(checksums.size());
+
+        try {
+            for (String checksum : checksums) {
+                streams.add(sources.get(checksum).content().getInputStream());
+            }
+
+            jdbc.batchUpdate("INSERT INTO photo_blob (checksum, ref_count, file) VALUES (?, ?, ?)", new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    String checksum = checksums.get(i);
+                    ps.setString(1, checksum);
+                    ps.setInt(2, references.get(checksum));
+                    ps.setBinaryStream(3, streams.get(i), sources.get(checksum).length());
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return checksums.size();
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            streams.forEach(PhotoFileRepository::closeQuietly);
+        }
+    }
+
+    /**
+     * Runs the statements in a JDBC savepoint on the transaction's connection; the JPA
+     * dialect offers no nested transactions.
+     *
+     * @return false, with the savepoint rolled back, when they hit a duplicate checksum
+     */
+    private boolean tryUnique(Runnable statements) {
+        Boolean applied = jdbc.execute((ConnectionCallback<Boolean>) connection -> {
+            Savepoint savepoint = connection.getAutoCommit() ? null : connection.setSavepoint();
+
+            try {
+                statements.run();
+            } catch (DuplicateKeyException e) {
+                if (savepoint != null) {
+                    connection.rollback(savepoint);
+                }
+
+                return false;
+            }
+
+            if (savepoint != null) {
+                connection.releaseSavepoint(savepoint);
+            }
+
+            return true;
+        });
+
+        return Boolean.TRUE.equals(applied);
+    }
+
+    /**
+     * @return whether a blob with the checksum exists and gained {@code count} references
+     */
+    private boolean reference(String checksum, int count) {
+        return jdbc.update("UPDATE photo_blob SET ref_count = ref_count + ? WHERE checksum = ?", count, checksum) > 0;
+    }
+
+    /**
+     * Drops references to originals, {@code references} per checksum, deleting blobs once
+     * nothing references them; each step is one JDBC batch.
+     */
+    public void releaseAll(Map<String, Integer> references) {
+        if (references.isEmpty()) {
+            return;
+        }
+
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(references.entrySet());
+
+        jdbc.batchUpdate("UPDATE photo_blob SET ref_count = ref_count - ? WHERE checksum = ?", entries, entries.size(), (ps, entry) -> {
+            ps.setInt(1, entry.getValue());
+            ps.setString(2, entry.getKey());
+        });
+        jdbc.batchUpdate("DELETE FROM photo_blob WHERE checksum = ? AND ref_count <= 0", entries, entries.size(),
+                (ps, entry) -> ps.setString(1, entry.getKey()));
+    }
+
+    /**
+     * Removes the derived variants of the photos in one JDBC batch.
+     */
+    public void deleteAll(List<String> uuids) {
+        jdbc.batchUpdate("DELETE FROM photo_content WHERE photo_uuid = ?", uuids, uuids.size(),
+                (ps, uuid) -> ps.setBytes(1, TimeOrderedUuid.toBytes(uuid)));
+    }
+
+    private static PhotoUpload withLength(PhotoUpload upload, Content content) {
+        return new PhotoUpload(upload.fileName(), upload.contentType(), content.size(), upload.content());
+    }
+
+    private static Content hash(PhotoUpload upload) throws IOException {
+        try (CountingInputStream counting = new CountingInputStream(upload.content().getInputStream())) {
+            HashingInputStream hashing = new HashingInputStream(Hashing.sha256(), counting);
+            ByteStreams.exhaust(hashing);
+
+            return new Content(counting.getCount(), hashing.hash().toString());
+        }
+    }
+
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static long copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long total = 0;
+        int read;
+
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+            total += read;
+        }
+
+        return total;
+    }
+}
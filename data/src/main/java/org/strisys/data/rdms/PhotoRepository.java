@@ -1,12 +1,62 @@
 package org.strisys.data.rdms;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 import org.strisys.model.entity.PhotoState;
 
+/**
+ * Reads see live photos only; rows with {@code deletedAt} set are tombstones awaiting
+ * {@link PhotoTombstoneRepository purge}.
+ */
 @Repository
 public interface PhotoRepository extends JpaRepository<PhotoState, Long> {
+    @Query("select p from PhotoState p where p.uuid = ?1 and p.deletedAt is null")
     Optional<PhotoState> findByUuid(String value);
-    Optional<PhotoState> deleteByUuid(String value);
+
+    @Query("select p from PhotoState p where p.uuid in ?1 and p.deletedAt is null")
+    List<PhotoState> findByUuidIn(Collection<String> values);
+
+    @Query("select p.uuid from PhotoState p where p.uuid in ?1 and p.deletedAt is null")
+    List<String> findUuidByUuidIn(Collection<String> values);
+
+    @Override
+    @Query("select p from PhotoState p where p.deletedAt is null")
+    List<PhotoState> findAll();
+
+    List<PhotoState> findByIdGreaterThanAndDeletedAtIsNullOrderByIdAsc(Long id, Limit limit);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "256"))
+    @Query("select p from PhotoState p where p.deletedAt is null order by p.id")
+    Stream<PhotoState> streamAll();
+
+    /**
+     * Sets the non-null metadata fields of a live photo, and only those columns, provided
+     * it is still at {@code version}.
+     *
+     * @return 1 when updated, 0 when the photo is gone or has moved past {@code version}
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update PhotoState p set p.fileName = coalesce(?2, p.fileName), p.contentType = coalesce(?3, p.contentType),"
+            + " p.version = ?5, p.modifiedAt = ?6 where p.uuid = ?1 and p.version = ?4 and p.deletedAt is null")
+    int updateMetadata(String uuid, String fileName, String contentType, Short version, Short nextVersion, LocalDateTime modifiedAt);
+
+    /**
+     * Tombstones live photos in one update through {@code idx_photo_uuid}.
+     *
+     * @return the number of photos tombstoned
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update PhotoState p set p.deletedAt = ?2 where p.uuid in ?1 and p.deletedAt is null")
+    int markDeleted(Collection<String> uuids, LocalDateTime deletedAt);
 }
\ No newline at end of file
@@ -0,0 +1,44 @@
+package org.strisys.data.rdms;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.strisys.model.id.TimeOrderedUuid;
+
+/**
+ * Claims and hard-deletes tombstoned photo rows, which {@link PhotoRepository} never reads.
+ * Tombstones are found through {@code idx_photo_deleted_at}, oldest first, and locked as
+ * they are read, skipping rows another purger holds; the claimed rows belong to the
+ * calling transaction alone, so no batch result counts are needed to tell them apart.
+ */
+@Repository
+public class PhotoTombstoneRepository {
+    private final JdbcTemplate jdbc;
+
+    public record Tombstone(long id, String uuid, String checksum) {
+    }
+
+    public PhotoTombstoneRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /**
+     * Locks up to {@code limit} tombstones until the calling transaction ends; call it
+     * inside one.
+     */
+    public List<Tombstone> claimDeletedBefore(LocalDateTime deletedBefore, int limit) {
+        return jdbc.query("SELECT id, uuid, checksum FROM photo WHERE deleted_at < ? ORDER BY deleted_at FETCH FIRST ? ROWS ONLY FOR UPDATE SKIP LOCKED",
+                (rs, row) -> new Tombstone(rs.getLong(1), TimeOrderedUuid.fromBytes(rs.getBytes(2)), rs.getString(3)),
+                Timestamp.valueOf(deletedBefore), limit);
+    }
+
+    /**
+     * Deletes claimed rows in one JDBC batch.
+     */
+    public void deleteAll(List<Tombstone> claimed) {
+        jdbc.batchUpdate("DELETE FROM photo WHERE id = ?", claimed, claimed.size(), (ps, tombstone) -> ps.setLong(1, tombstone.id()));
+    }
+}
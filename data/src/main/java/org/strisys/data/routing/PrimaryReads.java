@@ -0,0 +1,19 @@
+package org.strisys.data.routing;
+
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Runs reads inside a read-write transaction so they are served by the primary. Use it
+ * where a caller must see a write it has just committed, which a lagging replica may not
+ * have applied yet.
+ */
+@Component
+public class PrimaryReads {
+    @Transactional
+    public <T> T get(Supplier<T> reads) {
+        return reads.get();
+    }
+}
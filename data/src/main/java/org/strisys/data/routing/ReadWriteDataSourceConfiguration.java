@@ -0,0 +1,79 @@
+package org.strisys.data.routing;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import javax.sql.DataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.util.StringUtils;
+
+/**
+ * Replaces the single Boot data source with a primary and read replicas when
+ * {@code data.replica.urls} lists at least one replica. Replica pools copy the primary's
+ * {@code spring.datasource.hikari} settings and credentials unless overridden, except the
+ * connection timeout: a replica that cannot hand out a connection quickly is skipped for the
+ * primary, so {@code data.replica.connection-timeout} bounds how long a dead replica stalls a
+ * read before that fallback. Without replicas nothing here is created and every statement
+ * goes to {@code spring.datasource}.
+ */
+@Configuration
+@ConditionalOnProperty("data.replica.urls")
+public class ReadWriteDataSourceConfiguration {
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean(destroyMethod = "close")
+    public ReadWriteRoutingDataSource readWriteRoutingDataSource(
+            HikariDataSource primaryDataSource,
+            @Value("${data.replica.urls}") List<String> urls,
+            @Value("${data.replica.username:}") String username,
+            @Value("${data.replica.password:}") String password,
+            @Value("${data.replica.connection-timeout:2s}") Duration connectionTimeout,
+            @Value("${data.replica.lag-query:}") String lagQuery,
+            @Value("${data.replica.max-lag:5s}") Duration maxLag,
+            @Value("${data.replica.health-interval:5s}") Duration healthInterval) {
+
+        List<ReadWriteRoutingDataSource.Replica> replicas = new ArrayList<>(urls.size());
+        String poolName = Objects.requireNonNullElse(primaryDataSource.getPoolName(), "HikariPool");
+
+        for (String url : urls) {
+            HikariDataSource replica = new HikariDataSource();
+            primaryDataSource.copyStateTo(replica);
+            replica.setPoolName(poolName + "-replica-" + (replicas.size() + 1));
+            replica.setJdbcUrl(url.trim());
+            replica.setReadOnly(true);
+            replica.setConnectionTimeout(connectionTimeout.toMillis());
+
+            if (StringUtils.hasText(username)) {
+                replica.setUsername(username);
+                replica.setPassword(password);
+            }
+
+            replicas.add(new ReadWriteRoutingDataSource.Replica(replica.getPoolName(), replica));
+        }
+
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(primaryDataSource, replicas, lagQuery, maxLag);
+        routing.startHealthChecks(healthInterval);
+
+        return routing;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReadWriteRoutingDataSource readWriteRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(readWriteRoutingDataSource);
+    }
+}
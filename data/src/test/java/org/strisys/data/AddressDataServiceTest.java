@@ -1,6 +1,9 @@
 package org.strisys.data;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
@@ -68,4 +71,63 @@ public class AddressDataServiceTest {
 
         tryWait(20);
     }
+
+    @Test
+    void whenBatchSaved_thenEveryAddressStored() {
+        List<AddressState> states = new ArrayList<>();
+
+        for (int i = 0; i < 120; i++) {
+            states.add(create());
+        }
+
+        // Apply, Assert
+        assertThat(addressService.saveAll(states)).hasSize(states.size());
+        assertThat(addressService.count()).isGreaterThanOrEqualTo(states.size());
+    }
+
+    @Test
+    void whenCreatedOrGot_thenNormalizedDuplicatesResolveToOneRow() {
+        String street = String.format("%d North Evergreen Terrace", System.nanoTime() % 100_000);
+        AddressState original = AddressState.builder().street1(street).city("Springfield").zipCode("49007-1234").build();
+        AddressState retyped = AddressState.builder()
+                .street1(street.toUpperCase().replace("NORTH", "N.").replace("TERRACE", "ter").replace(" ", "  "))
+                .city(" springfield ")
+                .zipCode("49007")
+                .build();
+        AddressState elsewhere = AddressState.builder().street1(street).city("Springfield").zipCode("49008").build();
+
+        // Apply
+        AddressDataService.Stored first = addressService.createOrGet(original);
+        AddressDataService.Stored second = addressService.createOrGet(retyped);
+        AddressDataService.Stored third = addressService.createOrGet(elsewhere);
+
+        // Assert
+        assertThat(first.created()).isTrue();
+        assertThat(first.address().getFingerprint()).hasSize(64);
+        assertThat(second.created()).isFalse();
+        assertThat(second.address().getId()).isEqualTo(first.address().getId());
+        assertThat(third.created()).isTrue();
+        assertThat(third.address().getFingerprint()).isNotEqualTo(first.address().getFingerprint());
+    }
+
+    @Test
+    void whenLookedUpAcrossChunks_thenEveryValidIdResolvedOnce() {
+        List<Address> saved = addressService.saveAll(List.of(create(), create(), create(), create(), create()));
+        List<String> ids = new ArrayList<>(saved.stream().map(Address::getUUID).toList());
+        ids.add(saved.get(0).getUUID().toUpperCase());
+        ids.add(saved.get(1).getUUID());
+        ids.add(UUID.randomUUID().toString());
+        ids.add("not-a-uuid");
+        ids.add(null);
+
+        // Apply (test profile looks up two ids per query)
+        Map<String, Address> found = addressService.findAllByUUID(ids);
+
+        // Assert
+        assertThat(found).hasSize(saved.size());
+
+        for (Address address : saved) {
+            assertThat(found.get(address.getUUID()).getId()).isEqualTo(address.getId());
+        }
+    }
 }
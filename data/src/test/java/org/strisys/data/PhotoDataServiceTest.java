@@ -1,19 +1,46 @@
 package org.strisys.data;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import com.google.common.hash.Hashing;
 import org.junit.jupiter.api.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.context.annotation.Import;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.strisys.data.rdms.PhotoFileRepository;
+import org.strisys.data.rdms.PhotoTombstoneRepository;
 import org.strisys.model.entity.Photo;
 import org.strisys.model.entity.PhotoState;
+import org.strisys.model.entity.PhotoUpload;
+import org.strisys.model.entity.PhotoVariant;
+import org.strisys.model.id.TimeOrderedUuid;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @DataJpaTest
-@Import(PhotoDataService.class)
+@Import({PhotoDataService.class, PhotoFileRepository.class, PhotoTombstoneRepository.class})
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
 @ActiveProfiles("test")
 public class PhotoDataServiceTest {
@@ -23,6 +50,15 @@ public class PhotoDataServiceTest {
     @Autowired
     private TestEntityManager entityManager;
 
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private PhotoTombstoneRepository tombstones;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
 
     @BeforeAll
     static void startH2Servers() throws SQLException {
@@ -42,6 +78,18 @@ public class PhotoDataServiceTest {
         return PhotoState.createRandom();
     }
 
+    private void purgeAll() {
+        LocalDateTime cutoff = LocalDateTime.now().plusSeconds(1);
+
+        while (service.purge(cutoff, 2) > 0) {
+            // next batch
+        }
+    }
+
+    private int countRows(String uuid) {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM photo WHERE uuid = ?", Integer.class, TimeOrderedUuid.toBytes(uuid));
+    }
+
     private static void assertMatch(PhotoState state, PhotoState originalState) {
         assertThat(state.getId()).isNotNull();
         assertThat(state.getUuid()).isEqualTo(originalState.getUuid());
@@ -74,4 +122,358 @@ public class PhotoDataServiceTest {
         Photo fetchedPostDelete = service.tryGet(persisted.getUuid());
         assertThat(fetchedPostDelete.getIsNull()).isTrue();
     }
+
+    @Test
+    void whenFileSaved_thenStreamsRequestedRange() {
+        byte[] bytes = new byte[(PhotoFileRepository.BUFFER_SIZE * 2) + 17];
+        Arrays.fill(bytes, (byte) 7);
+        bytes[100] = 1;
+
+        Photo persisted = service.save("ranged.png", bytes, "image/png");
+        assertThat(persisted.getSize()).isEqualTo(bytes.length);
+
+        // Apply, Assert (full body)
+        ByteArrayOutputStream full = new ByteArrayOutputStream();
+        assertThat(service.writeFile(persisted.getUuid(), 0, bytes.length, full)).isEqualTo(bytes.length);
+        assertThat(full.toByteArray()).isEqualTo(bytes);
+
+        // Apply, Assert (partial body)
+        ByteArrayOutputStream partial = new ByteArrayOutputStream();
+        assertThat(service.writeFile(persisted.getUuid(), 100, 10, partial)).isEqualTo(10);
+        assertThat(partial.toByteArray()).isEqualTo(Arrays.copyOfRange(bytes, 100, 110));
+
+        // Apply, Assert (variants stored alongside the original)
+        byte[] thumbnail = Arrays.copyOf(bytes, 32);
+        service.saveVariant(persisted.getUuid(), PhotoVariant.THUMBNAIL, new ByteArrayInputStream(thumbnail), thumbnail.length);
+        assertThat(service.getVariantLength(persisted.getUuid(), PhotoVariant.THUMBNAIL)).hasValue(thumbnail.length);
+        assertThat(service.getVariantLength(persisted.getUuid(), PhotoVariant.MEDIUM)).isEmpty();
+
+        // Apply, Assert (bytes removed with the metadata)
+        service.remove(persisted.getUuid());
+        assertThat(service.writeFile(persisted.getUuid(), 0, bytes.length, new ByteArrayOutputStream())).isZero();
+        assertThat(service.getVariantLength(persisted.getUuid(), PhotoVariant.THUMBNAIL)).isEmpty();
+    }
+
+    @Test
+    void whenStreamSaved_thenSizeAndChecksumRecorded() {
+        byte[] bytes = new byte[(PhotoFileRepository.BUFFER_SIZE * 3) + 5];
+        Arrays.fill(bytes, (byte) 3);
+
+        // Apply (length unknown, as with chunked uploads)
+        Photo persisted = service.save(new PhotoUpload("streamed.png", "image/png", -1, new ByteArrayResource(bytes)));
+
+        // Assert
+        assertThat(persisted.getSize()).isEqualTo(bytes.length);
+        assertThat(persisted.getChecksum()).isEqualTo(Hashing.sha256().hashBytes(bytes).toString());
+
+        Photo fetched = service.tryGet(persisted.getUuid());
+        assertThat(fetched.getSize()).isEqualTo(bytes.length);
+        assertThat(fetched.getChecksum()).isEqualTo(persisted.getChecksum());
+    }
+
+    @Test
+    void whenPaged_thenKeysetCoversEveryRowOnce() {
+        for (int i = 0; i < 5; i++) {
+            service.save(create());
+        }
+
+        List<Long> paged = new ArrayList<>();
+        long after = 0L;
+        List<Photo> page;
+
+        // Apply
+        while (!(page = service.findPage(after, 2)).isEmpty()) {
+            assertThat(page).hasSizeLessThanOrEqualTo(2);
+            page.forEach(photo -> paged.add(photo.getState().getId()));
+            after = paged.get(paged.size() - 1);
+        }
+
+        List<Long> streamed = new ArrayList<>();
+        service.forEach(photo -> streamed.add(photo.getState().getId()));
+
+        // Assert
+        assertThat(paged).isSorted().doesNotHaveDuplicates().hasSizeGreaterThanOrEqualTo(5);
+        assertThat(streamed).isEqualTo(paged);
+    }
+
+    @Test
+    void whenBatchSaved_thenEveryFileStored() {
+        List<PhotoUpload> uploads = new ArrayList<>();
+
+        for (int i = 0; i < 120; i++) {
+            byte[] bytes = new byte[i + 1];
+            Arrays.fill(bytes, (byte) i);
+            uploads.add(new PhotoUpload("batch-" + i + ".png", "image/png", bytes.length, new ByteArrayResource(bytes)));
+        }
+
+        // Apply
+        List<Photo> saved = service.saveAll(uploads);
+
+        // Assert
+        assertThat(saved).hasSize(uploads.size());
+        assertThat(saved).extracting(photo -> photo.getState().getId()).doesNotContainNull().doesNotHaveDuplicates();
+
+        Photo last = service.tryGet(saved.get(119).getUuid());
+        assertThat(last.getFileName()).isEqualTo("batch-119.png");
+        assertThat(last.getSize()).isEqualTo(120);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.writeFile(last.getUuid(), 0, 120, out);
+        assertThat(out.toByteArray()).containsOnly((byte) 119);
+    }
+
+    @Test
+    void whenSavedInSequence_thenIdentifiersAreTimeOrdered() {
+        List<String> uuids = new ArrayList<>();
+
+        // Apply
+        for (int i = 0; i < 5; i++) {
+            uuids.add(service.save("ordered-" + i + ".png").getUuid());
+        }
+
+        // Assert
+        assertThat(uuids).isSorted();
+        assertThat(uuids).allSatisfy(uuid -> assertThat(uuid.charAt(14)).isEqualTo('7'));
+        assertThat(service.tryGet(uuids.get(4).toUpperCase()).getUuid()).isEqualTo(uuids.get(4));
+        assertThat(service.tryGet("not-a-uuid").getIsNull()).isTrue();
+    }
+
+    @Test
+    void whenSameBytesSaved_thenStoredOnceAndCollectedWhenUnreferenced() {
+        byte[] bytes = new byte[1024];
+        ThreadLocalRandom.current().nextBytes(bytes);
+        String checksum = Hashing.sha256().hashBytes(bytes).toString();
+        String refs = "SELECT ref_count FROM photo_blob WHERE checksum = ?";
+
+        // Apply
+        Photo streamed = service.save(new PhotoUpload("first.png", "image/png", bytes.length, new ByteArrayResource(bytes)));
+        List<Photo> batched = service.saveAll(List.of(
+                new PhotoUpload("second.png", "image/png", bytes.length, new ByteArrayResource(bytes)),
+                new PhotoUpload("third.png", "image/png", bytes.length, new ByteArrayResource(bytes))));
+
+        // Assert
+        assertThat(batched).extracting(Photo::getChecksum).containsOnly(streamed.getChecksum());
+        assertThat(jdbc.queryForList(refs, Integer.class, checksum)).containsExactly(3);
+
+        // Apply, Assert (the shared bytes outlive all but the last reference)
+        service.remove(streamed.getUuid());
+        service.remove(batched.get(0).getUuid());
+        assertThat(jdbc.queryForList(refs, Integer.class, checksum)).containsExactly(3);
+        purgeAll();
+        assertThat(jdbc.queryForList(refs, Integer.class, checksum)).containsExactly(1);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.writeFile(batched.get(1).getUuid(), 0, bytes.length, out);
+        assertThat(out.toByteArray()).isEqualTo(bytes);
+
+        service.remove(batched.get(1).getUuid());
+        purgeAll();
+        assertThat(jdbc.queryForList(refs, Integer.class, checksum)).isEmpty();
+    }
+
+    @Test
+    void whenDuplicateUploaded_thenOnlyHashedNotWrittenAgain() {
+        byte[] bytes = new byte[2048];
+        ThreadLocalRandom.current().nextBytes(bytes);
+        AtomicInteger opened = new AtomicInteger();
+        InputStreamSource counted = () -> {
+            opened.incrementAndGet();
+            return new ByteArrayInputStream(bytes);
+        };
+
+        // Apply
+        Photo first = service.save(new PhotoUpload("original.png", "image/png", bytes.length, counted));
+        int openedByFirst = opened.getAndSet(0);
+        Photo duplicate = service.save(new PhotoUpload("duplicate.png", "image/png", bytes.length, counted));
+
+        // Assert (hashed, then inserted; the duplicate is only hashed)
+        assertThat(openedByFirst).isEqualTo(2);
+        assertThat(opened.get()).isEqualTo(1);
+        assertThat(duplicate.getChecksum()).isEqualTo(first.getChecksum());
+        assertThat(jdbc.queryForList("SELECT ref_count FROM photo_blob WHERE checksum = ?", Integer.class, first.getChecksum())).containsExactly(2);
+    }
+
+    @Test
+    void whenRemoved_thenTombstonedUntilPurged() {
+        byte[] thumbnail = new byte[16];
+        List<String> uuids = new ArrayList<>();
+
+        for (int i = 0; i < 3; i++) {
+            String uuid = service.save("tombstone-" + i + ".png", new byte[32], "image/png").getUuid();
+            service.saveVariant(uuid, PhotoVariant.THUMBNAIL, new ByteArrayInputStream(thumbnail), thumbnail.length);
+            uuids.add(uuid);
+        }
+
+        // Apply
+        Photo removed = service.remove(uuids.get(0));
+        Set<String> bulk = service.removeAll(List.of(uuids.get(1).toUpperCase(), uuids.get(0), "not-a-uuid"));
+
+        // Assert (hidden from every read, rows kept)
+        assertThat(removed.getUuid()).isEqualTo(uuids.get(0));
+        assertThat(service.remove(uuids.get(0)).getIsNull()).isTrue();
+        assertThat(bulk).containsExactly(uuids.get(1));
+        assertThat(service.tryGet(uuids.get(1)).getIsNull()).isTrue();
+        assertThat(service.findAllByUuid(uuids)).containsOnlyKeys(uuids.get(2));
+        assertThat(service.findAll()).extracting(Photo::getUuid).doesNotContain(uuids.get(0), uuids.get(1));
+        assertThat(service.writeFile(uuids.get(0), 0, 32, new ByteArrayOutputStream())).isZero();
+        assertThat(service.getVariantLength(uuids.get(1), PhotoVariant.THUMBNAIL)).isEmpty();
+        assertThat(countRows(uuids.get(0))).isEqualTo(1);
+
+        // Apply, Assert (purged)
+        assertThat(service.purge(LocalDateTime.now().minusMinutes(1), 10)).isZero();
+        purgeAll();
+        assertThat(countRows(uuids.get(0))).isZero();
+        assertThat(countRows(uuids.get(1))).isZero();
+        assertThat(countRows(uuids.get(2))).isEqualTo(1);
+        assertThat(service.getVariantLength(uuids.get(2), PhotoVariant.THUMBNAIL)).hasValue(thumbnail.length);
+    }
+
+    @Test
+    void whenSameBytesUploadedConcurrently_thenAllSucceedSharingOneBlob() throws Exception {
+        byte[] bytes = new byte[4096];
+        ThreadLocalRandom.current().nextBytes(bytes);
+        String checksum = Hashing.sha256().hashBytes(bytes).toString();
+        int uploads = 4;
+        CyclicBarrier start = new CyclicBarrier(uploads);
+        List<CompletableFuture<Photo>> saved = new ArrayList<>();
+
+        // Apply
+        for (int i = 0; i < uploads; i++) {
+            String fileName = "concurrent-" + i + ".png";
+            saved.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    start.await();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+
+                return service.save(new PhotoUpload(fileName, "image/png", bytes.length, new ByteArrayResource(bytes)));
+            }));
+        }
+
+        // Assert
+        for (CompletableFuture<Photo> photo : saved) {
+            assertThat(photo.get().getChecksum()).isEqualTo(checksum);
+        }
+
+        assertThat(jdbc.queryForList("SELECT ref_count FROM photo_blob WHERE checksum = ?", Integer.class, checksum)).containsExactly(uploads);
+    }
+
+    @Test
+    void whenBatchRacesAConcurrentUpload_thenDuplicateBytesAreReferenced() throws Exception {
+        byte[] raced = new byte[512];
+        byte[] unique = new byte[256];
+        ThreadLocalRandom.current().nextBytes(raced);
+        ThreadLocalRandom.current().nextBytes(unique);
+        String checksum = Hashing.sha256().hashBytes(raced).toString();
+        AtomicInteger opened = new AtomicInteger();
+
+        // the second open is the batch insert, after the checksum lookups: commit the same bytes first
+        InputStreamSource racing = () -> {
+            if (opened.incrementAndGet() == 2) {
+                CompletableFuture.runAsync(() -> service.save(new PhotoUpload("winner.png", "image/png", raced.length, new ByteArrayResource(raced)))).join();
+            }
+
+            return new ByteArrayInputStream(raced);
+        };
+
+        // Apply
+        List<Photo> batched = service.saveAll(List.of(
+                new PhotoUpload("raced.png", "image/png", raced.length, racing),
+                new PhotoUpload("unique.png", "image/png", unique.length, new ByteArrayResource(unique))));
+
+        // Assert
+        assertThat(batched).hasSize(2);
+        assertThat(jdbc.queryForList("SELECT ref_count FROM photo_blob WHERE checksum = ?", Integer.class, checksum)).containsExactly(2);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.writeFile(batched.get(1).getUuid(), 0, unique.length, out);
+        assertThat(out.toByteArray()).isEqualTo(unique);
+    }
+
+    @Test
+    void whenLookedUp_thenResolvedAcrossChunks() {
+        List<String> uuids = new ArrayList<>();
+
+        for (int i = 0; i < 5; i++) {
+            uuids.add(service.save("lookup-" + i + ".png").getUuid());
+        }
+
+        List<String> requested = new ArrayList<>(uuids);
+        requested.set(0, uuids.get(0).toUpperCase());
+        requested.add(PhotoState.createRandom().getUuid());
+        requested.add("not-a-uuid");
+
+        // Apply
+        Map<String, Photo> found = service.findAllByUuid(requested);
+
+        // Assert
+        assertThat(found).containsOnlyKeys(uuids);
+        assertThat(found.get(uuids.get(4)).getFileName()).isEqualTo("lookup-4.png");
+    }
+
+    @Test
+    void whenPurgersRunConcurrently_thenEachTombstoneIsClaimedOnce() throws Exception {
+        TransactionTemplate separate = new TransactionTemplate(transactionManager);
+        separate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        List<String> uuids = new ArrayList<>();
+
+        for (int i = 0; i < 3; i++) {
+            uuids.add(service.save("claimed-" + i + ".png").getUuid());
+        }
+
+        separate.executeWithoutResult(status -> service.removeAll(uuids));
+        LocalDateTime cutoff = LocalDateTime.now().plusSeconds(1);
+        CountDownLatch claimed = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // Apply
+        CompletableFuture<List<PhotoTombstoneRepository.Tombstone>> first = CompletableFuture.supplyAsync(() -> separate.execute(status -> {
+            List<PhotoTombstoneRepository.Tombstone> rows = tombstones.claimDeletedBefore(cutoff, 100);
+            claimed.countDown();
+
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            return rows;
+        }));
+        claimed.await();
+        List<PhotoTombstoneRepository.Tombstone> second = CompletableFuture.supplyAsync(() ->
+                separate.execute(status -> tombstones.claimDeletedBefore(cutoff, 100))).get();
+        release.countDown();
+
+        // Assert
+        assertThat(first.get()).extracting(PhotoTombstoneRepository.Tombstone::uuid).containsAll(uuids);
+        assertThat(second).extracting(PhotoTombstoneRepository.Tombstone::uuid).doesNotContainAnyElementsOf(uuids);
+    }
+
+    @Test
+    void whenMetadataUpdated_thenVersionGuardedAndBytesKept() {
+        byte[] bytes = new byte[64];
+        ThreadLocalRandom.current().nextBytes(bytes);
+        Photo persisted = service.save("before.png", bytes, "image/png");
+        short version = persisted.getState().getVersion();
+
+        // Apply
+        Photo updated = service.updateMetadata(persisted.getUuid().toUpperCase(), "after.jpg", null, version);
+
+        // Assert
+        assertThat(updated.getFileName()).isEqualTo("after.jpg");
+        assertThat(updated.getContentType()).isEqualTo("image/png");
+        assertThat(updated.getState().getVersion()).isEqualTo((short) (version + 1));
+        assertThat(updated.getChecksum()).isEqualTo(persisted.getChecksum());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.writeFile(persisted.getUuid(), 0, bytes.length, out);
+        assertThat(out.toByteArray()).isEqualTo(bytes);
+
+        // Apply, Assert (stale version, missing photo)
+        assertThatThrownBy(() -> service.updateMetadata(persisted.getUuid(), null, "image/gif", version))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        assertThat(service.tryGet(persisted.getUuid()).getContentType()).isEqualTo("image/png");
+        assertThat(service.updateMetadata(PhotoState.createRandom().getUuid(), "x.png", null, version).getIsNull()).isTrue();
+    }
 }
@@ -0,0 +1,108 @@
+package org.strisys.data.routing;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.strisys.data.PhotoDataService;
+import org.strisys.data.rdms.PhotoFileRepository;
+import org.strisys.data.rdms.PhotoTombstoneRepository;
+import org.strisys.model.entity.Photo;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Two in-memory H2 databases stand in for the primary and a replica. Replication is a
+ * snapshot of the primary copied into the replica before each test, so anything written
+ * afterwards exists only on the primary.
+ */
+@DataJpaTest
+@Import({PhotoDataService.class, PhotoFileRepository.class, PhotoTombstoneRepository.class, PrimaryReads.class, ReadWriteDataSourceConfiguration.class})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:primary;DB_CLOSE_DELAY=-1",
+        "data.replica.urls=jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1",
+        "data.replica.lag-query=SELECT seconds FROM replica_lag",
+        "data.replica.max-lag=5s",
+        "data.replica.health-interval=1h"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ReadWriteRoutingTest {
+    @Autowired
+    private PhotoDataService service;
+
+    @Autowired
+    private PrimaryReads primary;
+
+    @Autowired
+    private HikariDataSource primaryDataSource;
+
+    @Autowired
+    private ReadWriteRoutingDataSource routing;
+
+    private Photo replicated;
+
+    private JdbcTemplate replica() {
+        return new JdbcTemplate(routing.getReplicas().get(0).getDataSource());
+    }
+
+    @BeforeEach
+    void replicate() throws Exception {
+        replicated = service.save("replicated.png");
+        Path snapshot = Files.createTempFile("primary-", ".sql");
+
+        try {
+            new JdbcTemplate(primaryDataSource).execute(String.format("SCRIPT TO '%s'", snapshot));
+            replica().execute("DROP ALL OBJECTS");
+            replica().execute(String.format("RUNSCRIPT FROM '%s'", snapshot));
+        } finally {
+            Files.deleteIfExists(snapshot);
+        }
+
+        replica().execute("CREATE TABLE replica_lag (seconds INT)");
+        replica().execute("INSERT INTO replica_lag VALUES (0)");
+        routing.checkReplicas();
+    }
+
+    @Test
+    void whenReadOnly_thenServedByReplica() {
+        // Apply
+        Photo written = service.save("written.png");
+
+        // Assert
+        assertThat(routing.getReplicas().get(0).isHealthy()).isTrue();
+        assertThat(service.tryGet(replicated.getUuid()).getIsNull()).isFalse();
+        assertThat(service.tryGet(written.getUuid()).getIsNull()).isTrue();
+        assertThat(primary.get(() -> service.tryGet(written.getUuid())).getIsNull()).isFalse();
+    }
+
+    @Test
+    void whenReplicaLags_thenReadsFallBackToPrimary() {
+        Photo written = service.save("written.png");
+
+        // Apply
+        replica().update("UPDATE replica_lag SET seconds = 60");
+        routing.checkReplicas();
+
+        // Assert
+        assertThat(routing.getReplicas().get(0).isHealthy()).isFalse();
+        assertThat(service.tryGet(written.getUuid()).getIsNull()).isFalse();
+
+        // Apply
+        replica().update("UPDATE replica_lag SET seconds = 0");
+        routing.checkReplicas();
+
+        // Assert
+        assertThat(routing.getReplicas().get(0).isHealthy()).isTrue();
+        assertThat(service.tryGet(written.getUuid()).getIsNull()).isTrue();
+    }
+}
@@ -1,22 +1,25 @@
 package org.strisys.model.entity;
 
 import java.util.Objects;
-import java.util.UUID;
 import jakarta.persistence.*;
+import org.strisys.model.id.AddressFingerprint;
+import org.strisys.model.id.TimeOrderedUuid;
+import org.strisys.model.id.UuidBinaryConverter;
 import org.strisys.model.entity.superclass.impl.BaseEntity;
 
 @Entity
 @Table(name = "address", indexes = {
-    @Index(name = "idx_address_uuid", columnList = "uuid", unique = true)
+    @Index(name = "idx_address_uuid", columnList = "uuid", unique = true),
+    @Index(name = "idx_address_fingerprint", columnList = "fingerprint, id")
 })
 //noinspection RedundantLombok
 public class Address extends BaseEntity {
     public Address() {
-        this.uuid = UUID.randomUUID().toString();
+        this.uuid = TimeOrderedUuid.next();
     }
 
     public Address(AddressState address) {
-        this.uuid = (uuid != null) ? uuid : UUID.randomUUID().toString();
+        this.uuid = (uuid != null) ? uuid : TimeOrderedUuid.next();
         this.streetName = address.getStreet1();
         this.streetSuffix = address.getStreet2();
         this.city = address.getCity();
@@ -32,7 +35,7 @@ public class Address extends BaseEntity {
         String city,
         String postalCode
     ) {
-        this.uuid = (uuid != null) ? uuid : UUID.randomUUID().toString();
+        this.uuid = (uuid != null) ? uuid : TimeOrderedUuid.next();
         this.houseNumber = houseNumber;
         this.streetData = streetData;
         this.streetName = streetName;
@@ -42,7 +45,8 @@ public class Address extends BaseEntity {
         this.postalCode = postalCode;
     }
 
-    @Column(name = "uuid", nullable = false, updatable = false, unique = true, length = 36)
+    @Convert(converter = UuidBinaryConverter.class)
+    @Column(name = "uuid", nullable = false, updatable = false, unique = true, length = TimeOrderedUuid.BYTES, columnDefinition = "BINARY(16)")
     private String uuid;
 
     @Column(name = "house_number", length = Integer.MAX_VALUE)
@@ -63,12 +67,16 @@ public class Address extends BaseEntity {
     @Column(name = "postal_code", length = 32)
     private String postalCode;
 
+    // see AddressFingerprint; not unique, plain creates may still store duplicates
+    @Column(name = "fingerprint", length = AddressFingerprint.LENGTH)
+    private String fingerprint;
+
     public String getUUID() {
-        return (this.uuid != null) ? this.uuid : (this.uuid = UUID.randomUUID().toString());
+        return (this.uuid != null) ? this.uuid : (this.uuid = TimeOrderedUuid.next());
     }
 
     public void setUUID(String uuid) {
-        this.uuid = (uuid != null) ? uuid : UUID.randomUUID().toString();
+        this.uuid = (uuid != null) ? uuid : TimeOrderedUuid.next();
     }
 
     public String getStreetData() {
@@ -120,6 +128,16 @@ public class Address extends BaseEntity {
         this.postalCode = postalCode;
     }
 
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    @PrePersist
+    @PreUpdate
+    protected void onFingerprint() {
+        this.fingerprint = AddressFingerprint.of(this);
+    }
+
     @Override
     public int hashCode() {
         return Objects.hash(super.getId());
@@ -1,8 +1,8 @@
 package org.strisys.model.entity;
 
-import java.util.UUID;
 import jakarta.persistence.*;
 import org.strisys.model.entity.superclass.impl.BaseEntity;
+import org.strisys.model.id.TimeOrderedUuid;
 
 public class Photo extends BaseEntity {
     private PhotoState state;
@@ -16,7 +16,7 @@ public class Photo extends BaseEntity {
 
     public String getUuid() {
         if (this.state.getUuid() == null) {
-            this.state.setUuid(UUID.randomUUID().toString());
+            this.state.setUuid(TimeOrderedUuid.next());
         }
 
         return this.state.getUuid();
@@ -34,14 +34,6 @@ public class Photo extends BaseEntity {
         this.state.setFileName(fileName);
     }
 
-    public byte[] getFile() {
-        return this.state.getFile();
-    }
-
-    public void setFile(byte[] file) {
-        this.state.setFile(file);
-    }
-
     public String getContentType() {
         return this.state.getContentType();
     }
@@ -50,6 +42,14 @@ public class Photo extends BaseEntity {
         this.state.setContentType(contentType);
     }
 
+    public Long getSize() {
+        return this.state.getSize();
+    }
+
+    public String getChecksum() {
+        return this.state.getChecksum();
+    }
+
     public Boolean getIsNull() {
         return this.state.isNull();
     }
@@ -64,7 +64,7 @@ public class Photo extends BaseEntity {
 
     public static Photo create(PhotoState state) {
         if (state.getUuid() == null) {
-            state.setUuid(UUID.randomUUID().toString());
+            state.setUuid(TimeOrderedUuid.next());
         }
 
         return (new Photo(state));
@@ -0,0 +1,29 @@
+package org.strisys.model.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * The bytes of an original photo, stored once per distinct SHA-256 checksum however many
+ * {@link PhotoState} rows carry that checksum. {@code refCount} is the number of such rows;
+ * the data layer deletes the blob when it drops to zero. Like {@link PhotoContent}, rows
+ * are streamed by the data layer and the mapping only owns the table definition.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "photo_blob")
+public class PhotoBlob {
+    @Id
+    @Column(name = "checksum", nullable = false, length = 64)
+    private String checksum;
+
+    @Column(name = "ref_count", nullable = false)
+    private int refCount;
+
+    @Lob
+    @Column(name = "file", columnDefinition = "BLOB")
+    private byte[] file;
+}
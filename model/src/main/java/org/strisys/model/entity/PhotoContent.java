@@ -0,0 +1,42 @@
+package org.strisys.model.entity;
+
+import java.io.Serializable;
+import jakarta.persistence.*;
+import lombok.*;
+import org.strisys.model.id.TimeOrderedUuid;
+
+/**
+ * The bytes of a photo's derived variants, kept apart from {@link PhotoState} so
+ * metadata queries never touch the BLOB; originals are shared through {@link PhotoBlob}.
+ * Rows are read and written as streams by the data layer rather than loaded through
+ * this entity; the mapping exists to own the table definition.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@IdClass(PhotoContent.Key.class)
+@Table(name = "photo_content")
+public class PhotoContent {
+    @Id
+    // written as TimeOrderedUuid bytes by the data layer; this mapping only owns the DDL
+    @Column(name = "photo_uuid", nullable = false, updatable = false, length = TimeOrderedUuid.BYTES, columnDefinition = "BINARY(16)")
+    private String photoUuid;
+
+    @Id
+    @Column(name = "variant", nullable = false, updatable = false, length = 16)
+    private String variant;
+
+    @Lob
+    @Column(name = "file", columnDefinition = "BLOB")
+    private byte[] file;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String photoUuid;
+        private String variant;
+    }
+}
@@ -0,0 +1,21 @@
+package org.strisys.model.entity;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+
+/**
+ * Metadata edit of a stored photo; {@code null} fields are left as they are. The edit only
+ * applies while the photo is still at {@code version}, as last read by the client.
+ */
+public record PhotoPatch(
+        @Size(max = 255, message = "File name must be 255 characters or less")
+        @Pattern(regexp = "^[^\\\\/:*?\"<>|]+\\.(png|jpe?g|gif)$", message = "File name must end with .png or .jpg")
+        String fileName,
+
+        @Pattern(regexp = "^image/(png|jpeg|gif)$", message = "Content type must be image/png, image/jpeg or image/gif")
+        String contentType,
+
+        @NotNull(message = "Version cannot be null")
+        Short version) {
+}
@@ -5,7 +5,10 @@ import jakarta.validation.constraints.*;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
 import org.strisys.model.entity.superclass.impl.BaseEntity;
+import org.strisys.model.id.TimeOrderedUuid;
+import org.strisys.model.id.UuidBinaryConverter;
 
+import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Data
@@ -15,10 +18,13 @@ import java.util.UUID;
 @EqualsAndHashCode(callSuper = true)
 @Entity
 @Table(name = "photo", indexes = {
-  @Index(name = "idx_photo_uuid", columnList = "uuid", unique = true)
+  @Index(name = "idx_photo_uuid", columnList = "uuid", unique = true),
+  @Index(name = "idx_photo_checksum", columnList = "checksum"),
+  @Index(name = "idx_photo_deleted_at", columnList = "deleted_at")
 })
 public class PhotoState extends BaseEntity {
-    @Column(name = "uuid", nullable = false, updatable = false, unique = true, length = 36)
+    @Convert(converter = UuidBinaryConverter.class)
+    @Column(name = "uuid", nullable = false, updatable = false, unique = true, length = TimeOrderedUuid.BYTES, columnDefinition = "BINARY(16)")
     @Size(max = 255, message = "Identifier for photo")
     private String uuid;
 
@@ -29,15 +35,21 @@ public class PhotoState extends BaseEntity {
     @Pattern(regexp = "^[^\\\\/:*?\"<>|]+\\.(png|jpe?g|gif)$", message = "File name must end with .png or .jpg")
     private String fileName;
 
-    @Lob
-    @Basic(fetch = FetchType.LAZY)
-    @Column(name = "file", columnDefinition = "BLOB")
-    @JsonIgnore
-    private byte[] file;
-
     @Column(name = "content_type", nullable = false, updatable = true, length = 255)
     private String contentType;
 
+    @Column(name = "file_size")
+    private Long size;
+
+    // key of the shared PhotoBlob holding the original bytes
+    @Column(name = "checksum", length = 64)
+    private String checksum;
+
+    // tombstone; set on delete, after which no read sees the row until it is purged
+    @JsonIgnore
+    @Column(name = "deleted_at")
+    private LocalDateTime deletedAt;
+
     private boolean isNull;
 
     public static PhotoState createNull() {
@@ -51,7 +63,7 @@ public class PhotoState extends BaseEntity {
 
     public static PhotoState createRandom() {
         return PhotoState.builder()
-                .uuid(UUID.randomUUID().toString())
+                .uuid(TimeOrderedUuid.next())
                 .fileName(UUID.randomUUID() + ".png")
                 .contentType("image/png")
                 .isNull(false)
@@ -63,12 +75,16 @@ public class PhotoState extends BaseEntity {
         PhotoState copy = PhotoState.builder()
                 .uuid(this.uuid)
                 .fileName(this.fileName)
-                .file(this.file)
                 .contentType(this.contentType)
+                .size(this.size)
+                .checksum(this.checksum)
+                .deletedAt(this.deletedAt)
                 .isNull(this.isNull)
                 .build();
 
         copy.setId(this.getId());
+        copy.setVersion(this.getVersion());
+        copy.setCreatedAt(this.getCreatedAt());
         copy.setModifiedAt(this.getModifiedAt());
 
         return copy;
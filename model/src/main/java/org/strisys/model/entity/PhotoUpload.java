@@ -0,0 +1,10 @@
+package org.strisys.model.entity;
+
+import org.springframework.core.io.InputStreamSource;
+
+/**
+ * One file of a batch upload. The content is re-openable so it can be validated and
+ * later streamed into storage without holding the bytes in memory.
+ */
+public record PhotoUpload(String fileName, String contentType, long length, InputStreamSource content) {
+}
@@ -0,0 +1,46 @@
+package org.strisys.model.entity;
+
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Renditions stored for a photo. Derived variants are bounded by {@link #getMaxEdge()}
+ * pixels on their longest side; {@link #ORIGINAL} is the uploaded file.
+ */
+public enum PhotoVariant {
+    ORIGINAL(0),
+    THUMBNAIL(160),
+    MEDIUM(800);
+
+    private final int maxEdge;
+
+    PhotoVariant(int maxEdge) {
+        this.maxEdge = maxEdge;
+    }
+
+    public int getMaxEdge() {
+        return maxEdge;
+    }
+
+    public boolean isDerived() {
+        return this != ORIGINAL;
+    }
+
+    public String getKey() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    public static Optional<PhotoVariant> tryParse(String value) {
+        if (value == null) {
+            return Optional.of(ORIGINAL);
+        }
+
+        for (PhotoVariant variant : values()) {
+            if (variant.getKey().equalsIgnoreCase(value.trim())) {
+                return Optional.of(variant);
+            }
+        }
+
+        return Optional.empty();
+    }
+}
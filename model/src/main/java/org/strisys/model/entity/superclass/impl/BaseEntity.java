@@ -5,6 +5,7 @@ import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.MappedSuperclass;
+import jakarta.persistence.PreUpdate;
 import jakarta.persistence.Version;
 import org.strisys.model.entity.superclass.Base;
 
@@ -12,8 +13,9 @@ import java.time.LocalDateTime;
 
 @MappedSuperclass
 public abstract class BaseEntity implements Base {
+    // pooled sequences (one per entity, allocation 50) keep JDBC insert batching possible
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE)
     @Column(name = "id", nullable = false)
     private Long id;
 
@@ -72,6 +74,11 @@ public abstract class BaseEntity implements Base {
         this.modifiedAt = modifiedAt;
     }
 
+    @PreUpdate
+    protected void onUpdate() {
+        this.modifiedAt = LocalDateTime.now();
+    }
+
     @Override
     public String toString() {
         return "{\"BaseEntity\":{"
@@ -0,0 +1,96 @@
+package org.strisys.model.id;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.strisys.model.entity.Address;
+
+/**
+ * Identifies a physical address regardless of how it was typed: fields are lower-cased,
+ * stripped of punctuation and collapsed to single spaces, street words are reduced to
+ * their USPS abbreviations ({@code Street} to {@code st}, {@code North} to {@code n})
+ * and ZIP+4 codes are folded to their five-digit ZIP. The fingerprint is the SHA-256 of
+ * the normalized fields, as 64 hex characters.
+ */
+public final class AddressFingerprint {
+    public static final int LENGTH = 64;
+
+    private static final Pattern PUNCTUATION = Pattern.compile("[^\\p{L}\\p{N}\\s]+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern ZIP_PLUS_4 = Pattern.compile("^(\\d{5})(?:\\s*-?\\s*\\d{4})?$");
+
+    private static final Map<String, String> ABBREVIATIONS = Map.ofEntries(
+            Map.entry("alley", "aly"), Map.entry("avenue", "ave"), Map.entry("av", "ave"),
+            Map.entry("boulevard", "blvd"), Map.entry("circle", "cir"), Map.entry("court", "ct"),
+            Map.entry("drive", "dr"), Map.entry("expressway", "expy"), Map.entry("freeway", "fwy"),
+            Map.entry("highway", "hwy"), Map.entry("lane", "ln"), Map.entry("parkway", "pkwy"),
+            Map.entry("place", "pl"), Map.entry("plaza", "plz"), Map.entry("road", "rd"),
+            Map.entry("square", "sq"), Map.entry("street", "st"), Map.entry("str", "st"),
+            Map.entry("terrace", "ter"), Map.entry("trail", "trl"), Map.entry("wy", "way"),
+            Map.entry("apartment", "apt"), Map.entry("suite", "ste"), Map.entry("building", "bldg"),
+            Map.entry("floor", "fl"),
+            Map.entry("north", "n"), Map.entry("south", "s"), Map.entry("east", "e"), Map.entry("west", "w"),
+            Map.entry("northeast", "ne"), Map.entry("northwest", "nw"),
+            Map.entry("southeast", "se"), Map.entry("southwest", "sw"));
+
+    private AddressFingerprint() {
+    }
+
+    public static String of(Address address) {
+        String normalized = String.join("|",
+                normalizeText(address.getHouseNumber()),
+                normalizeStreet(address.getStreetName()),
+                normalizeStreet(address.getStreetSuffix()),
+                normalizeText(address.getCity()),
+                normalizeZip(address.getPostalCode()));
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(normalized.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required of every JVM", e);
+        }
+    }
+
+    static String normalizeText(String value) {
+        if (value == null) {
+            return "";
+        }
+
+        String stripped = PUNCTUATION.matcher(value.toLowerCase(Locale.ROOT)).replaceAll(" ");
+        return WHITESPACE.matcher(stripped).replaceAll(" ").trim();
+    }
+
+    static String normalizeStreet(String value) {
+        String text = normalizeText(value);
+
+        if (text.isEmpty()) {
+            return text;
+        }
+
+        StringBuilder street = new StringBuilder(text.length());
+
+        for (String word : text.split(" ")) {
+            if (!street.isEmpty()) {
+                street.append(' ');
+            }
+
+            street.append(ABBREVIATIONS.getOrDefault(word, word));
+        }
+
+        return street.toString();
+    }
+
+    static String normalizeZip(String value) {
+        String text = (value != null) ? value.trim() : "";
+        Matcher zip = ZIP_PLUS_4.matcher(text);
+
+        return zip.matches() ? zip.group(1) : normalizeText(text).replace(" ", "");
+    }
+}
@@ -0,0 +1,107 @@
+package org.strisys.model.id;
+
+import java.nio.ByteBuffer;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version 7 UUIDs (RFC 9562): a 48-bit millisecond timestamp followed by random bits,
+ * so new keys land at the right-hand edge of an index instead of splitting pages across
+ * it. The 12 bits after the timestamp are a counter, keeping ids from one process
+ * strictly increasing even within a millisecond.
+ * <p>
+ * Identifiers travel as canonical strings and are stored as 16 bytes; see
+ * {@link UuidBinaryConverter}.
+ */
+public final class TimeOrderedUuid {
+    public static final int BYTES = 16;
+
+    private static final int LENGTH = 36;
+
+    // DRBG only computes under its lock; the platform default NativePRNG may read
+    // /dev/urandom while holding one, which pins the carrier of a virtual thread
+    private static final SecureRandom RANDOM = createRandom();
+
+    // timestamp << 12 | counter of the last id handed out
+    private static final AtomicLong LAST = new AtomicLong();
+
+    private TimeOrderedUuid() {
+    }
+
+    private static SecureRandom createRandom() {
+        try {
+            return SecureRandom.getInstance("DRBG");
+        } catch (NoSuchAlgorithmException e) {
+            return new SecureRandom();
+        }
+    }
+
+    public static String next() {
+        return nextUuid().toString();
+    }
+
+    public static UUID nextUuid() {
+        long now = System.currentTimeMillis() << 12;
+        long sequence = LAST.updateAndGet(last -> Math.max(now, last + 1));
+
+        long msb = ((sequence >>> 12) << 16) | 0x7000L | (sequence & 0x0FFFL);
+        long lsb = (RANDOM.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+
+        return new UUID(msb, lsb);
+    }
+
+    /**
+     * Strict check for the canonical 8-4-4-4-12 hex form, which {@link UUID#fromString}
+     * does not enforce.
+     */
+    public static boolean isValid(String value) {
+        if ((value == null) || (value.length() != LENGTH)) {
+            return false;
+        }
+
+        for (int i = 0; i < LENGTH; i++) {
+            char c = value.charAt(i);
+
+            if ((i == 8) || (i == 13) || (i == 18) || (i == 23)) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if (Character.digit(c, 16) < 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return the lower case form stored values are read back as
+     */
+    public static String canonical(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+
+    public static byte[] toBytes(String value) {
+        if (!isValid(value)) {
+            throw new IllegalArgumentException("Not a UUID: " + value);
+        }
+
+        UUID uuid = UUID.fromString(value);
+        return ByteBuffer.allocate(BYTES)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+
+    public static String fromBytes(byte[] bytes) {
+        if (bytes.length != BYTES) {
+            throw new IllegalArgumentException("Expected " + BYTES + " bytes but found " + bytes.length);
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong()).toString();
+    }
+}
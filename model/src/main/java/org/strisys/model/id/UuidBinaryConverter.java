@@ -0,0 +1,21 @@
+package org.strisys.model.id;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Maps a canonical UUID string attribute onto a {@code BINARY(16)} column, so indexes
+ * compare 16 bytes rather than 36 characters.
+ */
+@Converter
+public class UuidBinaryConverter implements AttributeConverter<String, byte[]> {
+    @Override
+    public byte[] convertToDatabaseColumn(String attribute) {
+        return (attribute != null) ? TimeOrderedUuid.toBytes(attribute) : null;
+    }
+
+    @Override
+    public String convertToEntityAttribute(byte[] column) {
+        return (column != null) ? TimeOrderedUuid.fromBytes(column) : null;
+    }
+}
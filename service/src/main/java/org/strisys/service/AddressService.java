@@ -1,26 +1,168 @@
 package org.strisys.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import org.strisys.data.AddressDataService;
 import org.strisys.model.entity.AddressState;
 import org.strisys.model.entity.Address;
+import org.strisys.service.imports.AddressImportFormat;
+import org.strisys.service.imports.AddressImportResult;
+import org.strisys.service.imports.AddressRecordReader;
+import org.strisys.service.lookup.LookupResult;
+import org.strisys.service.search.AddressField;
+import org.strisys.service.search.AddressMatch;
+import org.strisys.service.search.AddressPrefixIndex;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 public class AddressService {
     private final AddressDataService ds;
+    private final AddressPrefixIndex index;
+    private final Validator validator;
+    private final ObjectReader json;
+    private final int importBatchSize;
+    private final int maxImportErrors;
+
+    public record Stored(Address address, boolean created) {
+    }
+
+    public AddressService(
+            AddressDataService ds,
+            AddressPrefixIndex index,
+            Validator validator,
+            ObjectMapper mapper,
+            @Value("${address.import.batch-size:1000}") int importBatchSize,
+            @Value("${address.import.max-errors:100}") int maxImportErrors) {
 
-    public AddressService(AddressDataService ds) {
         this.ds = ds;
+        this.index = index;
+        this.validator = validator;
+        this.json = mapper.readerFor(AddressState.class);
+        this.importBatchSize = importBatchSize;
+        this.maxImportErrors = maxImportErrors;
     }
 
     public Address createAndPersist(AddressState state) {
-        return ds.createAndPersist(state);
+        Address address = ds.createAndPersist(state);
+        index.add(address);
+
+        return address;
+    }
+
+    /**
+     * Stores the address unless one with the same normalized fingerprint exists, in
+     * which case that one is returned.
+     */
+    public Stored createOrGet(AddressState state) {
+        AddressDataService.Stored stored = ds.createOrGet(state);
+
+        if (stored.created()) {
+            index.add(stored.address());
+        }
+
+        return new Stored(stored.address(), stored.created());
+    }
+
+    /**
+     * Fills the autocomplete index from the table once the application is serving;
+     * searches made meanwhile see the addresses loaded so far.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildIndex() {
+        long started = System.nanoTime();
+        ds.forEach(index::add);
+
+        log.info("Indexed {} addresses for search in {} ms", index.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    public List<AddressMatch> search(String prefix, AddressField field, int limit) {
+        return index.search(prefix, field, limit);
+    }
+
+    /**
+     * Reads, validates and stores addresses as they arrive. Valid records are committed
+     * every {@code address.import.batch-size} rows, so memory stays flat and a failure
+     * part way keeps the batches already committed; invalid records are skipped and
+     * reported by line.
+     */
+    public AddressImportResult importAll(InputStream in, AddressImportFormat format) throws IOException {
+        List<AddressState> batch = new ArrayList<>(importBatchSize);
+        List<AddressImportResult.Error> errors = new ArrayList<>();
+        long imported = 0;
+        long rejected = 0;
+
+        try (AddressRecordReader reader = AddressRecordReader.create(format, in, json)) {
+            AddressRecordReader.Record record;
+
+            while ((record = reader.next()) != null) {
+                String error = (record.error() != null) ? record.error() : validate(record.state());
+
+                if (error != null) {
+                    if (rejected++ < maxImportErrors) {
+                        errors.add(new AddressImportResult.Error(record.line(), error));
+                    }
+
+                    continue;
+                }
+
+                batch.add(record.state());
+
+                if (batch.size() == importBatchSize) {
+                    imported += save(batch);
+                    batch.clear();
+                }
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            imported += save(batch);
+        }
+
+        log.info("Imported {} addresses, rejected {}", imported, rejected);
+        return new AddressImportResult(imported, rejected, errors);
     }
 
     public Optional<Address> findByUUID(String value) {
         return ds.findByUUID(value);
     }
+
+    public LookupResult<Address> lookup(List<String> values) {
+        return LookupResult.of(values, ds.findAllByUUID(values));
+    }
+
+    private int save(List<AddressState> batch) {
+        List<Address> saved = ds.saveAll(batch);
+        index.addAll(saved);
+
+        return saved.size();
+    }
+
+    private String validate(AddressState state) {
+        Set<ConstraintViolation<AddressState>> violations = validator.validate(state);
+
+        if (violations.isEmpty()) {
+            return null;
+        }
+
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
 }
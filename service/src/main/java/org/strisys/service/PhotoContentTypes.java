@@ -0,0 +1,55 @@
+package org.strisys.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Detects the image type from the leading bytes of an upload rather than trusting
+ * the client supplied content type.
+ */
+public final class PhotoContentTypes {
+    static final int HEADER_LENGTH = 8;
+
+    private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final byte[] JPEG = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF};
+    private static final byte[] GIF87A = {'G', 'I', 'F', '8', '7', 'a'};
+    private static final byte[] GIF89A = {'G', 'I', 'F', '8', '9', 'a'};
+
+    private PhotoContentTypes() {
+    }
+
+    /**
+     * Peeks at the header of {@code in}, which must support mark/reset, leaving the
+     * stream positioned where it started.
+     */
+    public static Optional<String> detect(InputStream in) throws IOException {
+        in.mark(HEADER_LENGTH);
+        byte[] header = in.readNBytes(HEADER_LENGTH);
+        in.reset();
+
+        return detect(header);
+    }
+
+    public static Optional<String> detect(byte[] header) {
+        if (startsWith(header, PNG)) {
+            return Optional.of("image/png");
+        }
+
+        if (startsWith(header, JPEG)) {
+            return Optional.of("image/jpeg");
+        }
+
+        if (startsWith(header, GIF87A) || startsWith(header, GIF89A)) {
+            return Optional.of("image/gif");
+        }
+
+        return Optional.empty();
+    }
+
+    private static boolean startsWith(byte[] header, byte[] signature) {
+        return (header.length >= signature.length)
+                && Arrays.equals(header, 0, signature.length, signature, 0, signature.length);
+    }
+}
@@ -1,36 +1,324 @@
 package org.strisys.service;
 
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+import com.google.common.io.CountingInputStream;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.strisys.data.PhotoDataService;
 import org.strisys.model.entity.Photo;
+import org.strisys.model.entity.PhotoUpload;
+import org.strisys.model.entity.PhotoVariant;
+import org.strisys.model.id.TimeOrderedUuid;
+import org.strisys.service.cache.PhotoFileCache;
+import org.strisys.service.cache.PhotoListingCache;
+import org.strisys.service.cache.SingleFlight;
+import org.strisys.service.derivative.PhotoDerivativeService;
+import org.strisys.service.exception.PhotoVersionConflictException;
+import org.strisys.service.exception.UnsupportedPhotoContentException;
+import org.strisys.service.lookup.LookupResult;
+import org.strisys.service.writebehind.PhotoUploadStatus;
+import org.strisys.service.writebehind.PhotoWriteBehindService;
 
 @Service
 public class PhotoService {
     private final PhotoDataService ds;
+    private final PhotoFileCache cache;
+    private final PhotoListingCache listing;
+    private final PhotoDerivativeService derivatives;
+    private final PhotoWriteBehindService writeBehind;
+    private final int uploadBufferSize;
+    private final DistributionSummary uploadedBytes;
+    private final EnumMap<PhotoVariant, DistributionSummary> cachedBytes = new EnumMap<>(PhotoVariant.class);
+    private final EnumMap<PhotoVariant, DistributionSummary> storedBytes = new EnumMap<>(PhotoVariant.class);
+    private final SingleFlight<String, Photo> lookups;
+    private final SingleFlight<String, ByteBuffer> fills;
+
+    public PhotoService(
+            PhotoDataService ds,
+            PhotoFileCache cache,
+            PhotoListingCache listing,
+            PhotoDerivativeService derivatives,
+            PhotoWriteBehindService writeBehind,
+            MeterRegistry registry,
+            @Value("${photo.upload.buffer-size:8192}") int uploadBufferSize) {
 
-    public PhotoService(PhotoDataService ds) {
         this.ds = ds;
+        this.cache = cache;
+        this.listing = listing;
+        this.derivatives = derivatives;
+        this.writeBehind = writeBehind;
+        this.uploadBufferSize = uploadBufferSize;
+        this.uploadedBytes = DistributionSummary.builder("photo.upload.bytes")
+                .baseUnit("bytes")
+                .description("Size of each stored upload")
+                .register(registry);
+
+        for (PhotoVariant variant : PhotoVariant.values()) {
+            cachedBytes.put(variant, getDownloadSummary(registry, variant, "cache"));
+            storedBytes.put(variant, getDownloadSummary(registry, variant, "database"));
+        }
+
+        this.lookups = new SingleFlight<>(getCoalescedCounter(registry, "metadata"));
+        this.fills = new SingleFlight<>(getCoalescedCounter(registry, "bytes"));
     }
 
     public Collection<Photo> getAll() {
         return ds.findAll();
     }
 
+    /**
+     * @return the whole listing, already encoded; rebuilt only after a write
+     */
+    public PhotoListingCache.Snapshot getListing() {
+        return listing.get();
+    }
+
+    public List<Photo> getPage(long afterId, int limit) {
+        return ds.findPage(afterId, limit);
+    }
+
+    public void forEach(Consumer<Photo> consumer) {
+        ds.forEach(consumer);
+    }
+
+    /**
+     * Concurrent lookups of the same photo share one database read.
+     */
     public Photo tryGet(String id) {
-        return ds.tryGet(id);
+        if (!TimeOrderedUuid.isValid(id)) {
+            return Photo.getNull();
+        }
+
+        return lookups.execute(TimeOrderedUuid.canonical(id), () -> ds.tryGet(id));
+    }
+
+    public LookupResult<Photo> lookup(List<String> ids) {
+        return LookupResult.of(ids, ds.findAllByUuid(ids));
+    }
+
+    /**
+     * Copies {@code length} bytes from {@code offset} of the photo to {@code out}, serving
+     * photos of up to {@code photo.cache.max-entry-size} from the off-heap cache.
+     * Concurrent misses on the same entry share one fill.
+     */
+    public long writeFile(String id, long size, long offset, long length, OutputStream out) throws IOException {
+        return writeFile(id, PhotoVariant.ORIGINAL, size, offset, length, out);
+    }
+
+    public long writeFile(String id, PhotoVariant variant, long size, long offset, long length, OutputStream out) throws IOException {
+        String key = getCacheKey(id, variant);
+        ByteBuffer cached = cache.get(key);
+
+        if ((cached == null) && cache.accepts(size)) {
+            cached = fills.execute(key, () -> {
+                ByteBuffer filled = cache.get(key);
+                return (filled != null) ? filled : cache.load(key, size, buffer -> ds.writeFile(id, variant, 0, size, buffer));
+            });
+        }
+
+        long written;
+
+        if (cached != null) {
+            written = PhotoFileCache.write(cached, offset, length, out);
+            cachedBytes.get(variant).record(written);
+        } else {
+            written = ds.writeFile(id, variant, offset, length, out);
+            storedBytes.get(variant).record(written);
+        }
+
+        return written;
+    }
+
+    public OptionalLong getVariantLength(String id, PhotoVariant variant) {
+        return ds.getVariantLength(id, variant);
     }
 
     public Photo save(String fileName) {
-        return ds.save(fileName, new byte[0], "");
+        Photo photo = ds.save(fileName, new byte[0], "");
+        listing.invalidate();
+
+        return photo;
     }
 
     public Photo save(String fileName, byte[] bytes, String contentType) {
-        return ds.save(fileName, bytes, contentType);
+        Photo photo = ds.save(fileName, bytes, contentType);
+        listing.invalidate();
+        derivatives.schedule(photo);
+
+        return photo;
+    }
+
+    /**
+     * Streams an upload into storage without holding it on the heap; the content is
+     * re-opened to detect its type, hash it and, unless the bytes are already stored,
+     * write it. The stored content type is the one detected from the leading bytes; the
+     * declared type is only used in the rejection message.
+     */
+    public Photo save(PhotoUpload upload) throws IOException {
+        String detected;
+
+        try (InputStream in = new BufferedInputStream(upload.content().getInputStream(), PhotoContentTypes.HEADER_LENGTH)) {
+            detected = detect(upload.fileName(), upload.contentType(), in);
+        }
+
+        Photo photo = ds.save(new PhotoUpload(upload.fileName(), detected, upload.length(), upload.content()));
+        listing.invalidate();
+        uploadedBytes.record(photo.getSize());
+        derivatives.schedule(photo);
+
+        return photo;
     }
 
+    public boolean isWriteBehind() {
+        return writeBehind.isEnabled();
+    }
+
+    /**
+     * Validates the upload like {@link #save(PhotoUpload)} but only
+     * stages it for the write-behind writer; poll {@link #getUploadStatus} for the outcome.
+     */
+    public PhotoUploadStatus stage(String fileName, InputStream in, String contentType) throws IOException {
+        CountingInputStream counting = new CountingInputStream(in);
+        BufferedInputStream buffered = new BufferedInputStream(counting, uploadBufferSize);
+
+        String detected = detect(fileName, contentType, buffered);
+
+        PhotoUploadStatus status = writeBehind.stage(fileName, detected, buffered);
+        uploadedBytes.record(counting.getCount());
+
+        return status;
+    }
+
+    public PhotoUploadStatus getUploadStatus(String id) {
+        return writeBehind.getStatus(id);
+    }
+
+    /**
+     * Validates every file by its leading bytes before anything is written, then stores
+     * the batch in a single unit of work.
+     */
+    public List<Photo> saveAll(List<PhotoUpload> uploads) throws IOException {
+        List<PhotoUpload> detected = new ArrayList<>(uploads.size());
+
+        for (PhotoUpload upload : uploads) {
+            try (InputStream in = new BufferedInputStream(upload.content().getInputStream(), PhotoContentTypes.HEADER_LENGTH)) {
+                String contentType = detect(upload.fileName(), upload.contentType(), in);
+                detected.add(new PhotoUpload(upload.fileName(), contentType, upload.length(), upload.content()));
+            }
+        }
+
+        List<Photo> photos = ds.saveAll(detected);
+        listing.invalidate();
+
+        for (Photo photo : photos) {
+            uploadedBytes.record(photo.getSize());
+            derivatives.schedule(photo);
+        }
+
+        return photos;
+    }
+
+    /**
+     * Edits metadata only; see {@link PhotoDataService#updateMetadata}.
+     *
+     * @throws PhotoVersionConflictException when the photo has moved past {@code version}
+     */
+    public Photo update(String id, String fileName, String contentType, short version) {
+        Photo updated;
+
+        try {
+            updated = ds.updateMetadata(id, fileName, contentType, version);
+        } catch (OptimisticLockingFailureException e) {
+            throw new PhotoVersionConflictException(e.getMessage(), e);
+        }
+
+        if (!updated.getIsNull()) {
+            listing.invalidate();
+            lookups.forget(TimeOrderedUuid.canonical(id));
+        }
+
+        return updated;
+    }
+
+    /**
+     * Tombstones the photo; its bytes are purged in the background.
+     */
     public Photo remove(String id) {
-        return ds.remove(id);
+        Photo removed = ds.remove(id);
+        listing.invalidate();
+        forget(id);
+
+        return removed;
+    }
+
+    /**
+     * @return the canonical identifiers tombstoned as {@code found}, the rest as {@code missing}
+     */
+    public LookupResult<String> removeAll(List<String> ids) {
+        Set<String> removed = ds.removeAll(ids);
+
+        if (!removed.isEmpty()) {
+            listing.invalidate();
+            removed.forEach(this::forget);
+        }
+
+        return LookupResult.of(ids, removed.stream().collect(Collectors.toMap(Function.identity(), Function.identity())));
+    }
+
+    private void forget(String id) {
+        // reads still in flight may have seen the photo; later callers must not join them
+        if (TimeOrderedUuid.isValid(id)) {
+            lookups.forget(TimeOrderedUuid.canonical(id));
+        }
+
+        for (PhotoVariant variant : PhotoVariant.values()) {
+            fills.forget(getCacheKey(id, variant));
+            cache.invalidate(getCacheKey(id, variant));
+        }
+    }
+
+    private static String detect(String fileName, String contentType, InputStream in) throws IOException {
+        return PhotoContentTypes.detect(in).orElseThrow(() ->
+                new UnsupportedPhotoContentException(String.format("Content of '%s' (%s) is not a supported image", fileName, contentType)));
+    }
+
+    private static DistributionSummary getDownloadSummary(MeterRegistry registry, PhotoVariant variant, String source) {
+        return DistributionSummary.builder("photo.download.bytes")
+                .baseUnit("bytes")
+                .description("Bytes written per photo download or range")
+                .tag("variant", variant.getKey())
+                .tag("source", source)
+                .register(registry);
+    }
+
+    private static Counter getCoalescedCounter(MeterRegistry registry, String read) {
+        return Counter.builder("photo.read.coalesced")
+                .tag("read", read)
+                .description("Reads served by a concurrent identical read instead of the database")
+                .register(registry);
+    }
+
+    // canonical, so every spelling of an id shares one entry and one fill, and is forgotten by remove
+    private static String getCacheKey(String id, PhotoVariant variant) {
+        String key = TimeOrderedUuid.canonical(id);
+        return variant.isDerived() ? (key + "/" + variant.getKey()) : key;
     }
 }
@@ -0,0 +1,129 @@
+package org.strisys.service.cache;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Size-bounded cache of photo bytes held in direct buffers, so the hot set lives off
+ * the Java heap. Eviction is Caffeine's W-TinyLFU weighted by byte count; size the JVM's
+ * {@code -XX:MaxDirectMemorySize} above {@code photo.cache.max-size}.
+ * <p>
+ * Photo bytes never change under a UUID, so entries only need invalidating when a photo
+ * is removed. A {@code max-size} of zero disables the cache.
+ */
+@Component
+public class PhotoFileCache implements MeterBinder {
+    private final Cache<String, ByteBuffer> cache;
+    private final long maxEntryBytes;
+
+    public PhotoFileCache(
+            @Value("${photo.cache.max-size:256MB}") DataSize maxSize,
+            @Value("${photo.cache.max-entry-size:8MB}") DataSize maxEntrySize) {
+
+        this.maxEntryBytes = Math.min(maxEntrySize.toBytes(), maxSize.toBytes());
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((String uuid, ByteBuffer buffer) -> buffer.capacity())
+                .executor(Runnable::run)
+                .recordStats()
+                .build();
+    }
+
+    public boolean accepts(long size) {
+        return (size > 0) && (size <= maxEntryBytes);
+    }
+
+    /**
+     * @return a read-only view of the cached bytes, or {@code null} on a miss
+     */
+    public ByteBuffer get(String uuid) {
+        ByteBuffer buffer = cache.getIfPresent(uuid);
+        return (buffer != null) ? buffer.asReadOnlyBuffer() : null;
+    }
+
+    /**
+     * Fills a direct buffer of {@code size} bytes through {@code loader} and caches it.
+     */
+    public ByteBuffer load(String uuid, long size, Loader loader) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(Math.toIntExact(size));
+        loader.load(new BufferOutputStream(buffer));
+
+        if (buffer.hasRemaining()) {
+            throw new IOException(String.format("Expected %d bytes for photo %s but read %d", size, uuid, buffer.position()));
+        }
+
+        buffer.flip();
+        cache.put(uuid, buffer);
+
+        return buffer.asReadOnlyBuffer();
+    }
+
+    public void invalidate(String uuid) {
+        cache.invalidate(uuid);
+    }
+
+    public long getWeightedSize() {
+        return cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L);
+    }
+
+    public static long write(ByteBuffer buffer, long offset, long length, OutputStream out) throws IOException {
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(Math.toIntExact(offset));
+        slice.limit(Math.toIntExact(offset + length));
+
+        // the stream channel copies through a small heap chunk, never the whole buffer
+        WritableByteChannel channel = Channels.newChannel(out);
+        long written = 0;
+
+        while (slice.hasRemaining()) {
+            written += channel.write(slice);
+        }
+
+        return written;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "photo.file");
+        Gauge.builder("photo.file.cache.bytes", this, PhotoFileCache::getWeightedSize)
+                .baseUnit("bytes")
+                .description("Off-heap bytes held by the photo file cache")
+                .register(registry);
+    }
+
+    @FunctionalInterface
+    public interface Loader {
+        void load(OutputStream out) throws IOException;
+    }
+
+    private static final class BufferOutputStream extends OutputStream {
+        private final ByteBuffer buffer;
+
+        private BufferOutputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(int b) {
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            buffer.put(b, off, len);
+        }
+    }
+}
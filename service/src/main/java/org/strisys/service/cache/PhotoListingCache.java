@@ -0,0 +1,155 @@
+package org.strisys.service.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.hash.Hashing;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.strisys.data.PhotoDataService;
+import org.strisys.data.routing.PrimaryReads;
+import org.strisys.model.entity.Photo;
+import org.strisys.model.entity.PhotoState;
+
+/**
+ * The full photo listing held as already-encoded JSON, and optionally gzipped, so polling
+ * clients are answered without touching the database or the serializer. Every write
+ * bumps the version and drops the snapshot; the next read rebuilds it once, from the
+ * primary so a lagging replica cannot pin stale data until the following write.
+ * <p>
+ * The ETag is a digest of the JSON, so it is stable across restarts and instances.
+ * Rebuilds are serialized with a lock rather than a monitor, so a virtual thread waiting
+ * on one does not pin its carrier.
+ */
+@Component
+public class PhotoListingCache {
+    private static final TypeReference<List<PhotoState>> LISTING = new TypeReference<>() {
+    };
+
+    private final PhotoDataService ds;
+    private final PrimaryReads primary;
+    private final ObjectWriter writer;
+    private final boolean gzip;
+    private final AtomicLong version = new AtomicLong();
+    private final Counter rebuilds;
+    private final ReentrantLock rebuilding = new ReentrantLock();
+    private volatile Snapshot snapshot;
+
+    /**
+     * Each encoding is its own representation, so the gzipped bytes carry their own ETag.
+     */
+    public record Snapshot(long version, String etag, byte[] json, String gzipEtag, byte[] gzipped) {
+        public boolean hasGzip() {
+            return gzipped != null;
+        }
+    }
+
+    public PhotoListingCache(
+            PhotoDataService ds,
+            PrimaryReads primary,
+            ObjectMapper mapper,
+            MeterRegistry registry,
+            @Value("${photo.listing.snapshot.gzip:true}") boolean gzip) {
+
+        this.ds = ds;
+        this.primary = primary;
+        this.writer = mapper.writerFor(LISTING);
+        this.gzip = gzip;
+        this.rebuilds = Counter.builder("photo.listing.snapshot.rebuilds")
+                .description("Times the encoded photo listing was rebuilt after a write")
+                .register(registry);
+
+        Gauge.builder("photo.listing.snapshot.bytes", this, PhotoListingCache::getSnapshotBytes)
+                .baseUnit("bytes")
+                .description("Encoded size of the cached photo listing")
+                .register(registry);
+    }
+
+    public Snapshot get() {
+        Snapshot current = snapshot;
+
+        if ((current != null) && (current.version() == version.get())) {
+            return current;
+        }
+
+        return rebuild();
+    }
+
+    /**
+     * Marks the snapshot stale; call after every change to photo metadata.
+     */
+    public void invalidate() {
+        version.incrementAndGet();
+        snapshot = null;
+    }
+
+    private Snapshot rebuild() {
+        rebuilding.lock();
+
+        try {
+            return rebuildLocked();
+        } finally {
+            rebuilding.unlock();
+        }
+    }
+
+    private Snapshot rebuildLocked() {
+        long building = version.get();
+        Snapshot current = snapshot;
+
+        // another caller rebuilt it while this one waited
+        if ((current != null) && (current.version() == building)) {
+            return current;
+        }
+
+        List<PhotoState> states = primary.get(ds::findAll).stream()
+                .map(Photo::getState)
+                .filter(Objects::nonNull)
+                .toList();
+
+        try {
+            byte[] json = writer.writeValueAsBytes(states);
+            String digest = Hashing.sha256().hashBytes(json).toString().substring(0, 32);
+            Snapshot built = gzip
+                    ? new Snapshot(building, String.format("\"%s\"", digest), json, String.format("\"%s-gzip\"", digest), compress(json))
+                    : new Snapshot(building, String.format("\"%s\"", digest), json, null, null);
+
+            // a write that landed during the rebuild leaves the snapshot for the next reader
+            if (version.get() == building) {
+                snapshot = built;
+            }
+
+            rebuilds.increment();
+            return built;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private double getSnapshotBytes() {
+        Snapshot current = snapshot;
+        return (current != null) ? current.json().length : 0;
+    }
+
+    private static byte[] compress(byte[] json) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, json.length / 4));
+
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(json);
+        }
+
+        return out.toByteArray();
+    }
+}
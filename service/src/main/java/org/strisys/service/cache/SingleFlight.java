@@ -0,0 +1,81 @@
+package org.strisys.service.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.micrometer.core.instrument.Counter;
+
+/**
+ * Coalesces concurrent calls for the same key: the first caller runs the call and every
+ * caller arriving while it is in flight waits for and shares its result, or its failure.
+ * Nothing is remembered once the call completes, so a failure is never served to a later
+ * caller, and {@link #forget} lets callers arriving after a write start a fresh call
+ * rather than join one that may have read the old state.
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentHashMap<K, CompletableFuture<V>> calls = new ConcurrentHashMap<>();
+    private final Counter joined;
+
+    @FunctionalInterface
+    public interface Call<V, E extends Exception> {
+        V call() throws E;
+    }
+
+    /**
+     * @param joined counts callers served by another caller's call
+     */
+    public SingleFlight(Counter joined) {
+        this.joined = joined;
+    }
+
+    public <E extends Exception> V execute(K key, Call<V, E> call) throws E {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> leader = calls.putIfAbsent(key, flight);
+
+        if (leader != null) {
+            joined.increment();
+            return await(leader);
+        }
+
+        try {
+            V value = call.call();
+            flight.complete(value);
+
+            return value;
+        } catch (Throwable t) {
+            flight.completeExceptionally(t);
+            throw t;
+        } finally {
+            calls.remove(key, flight);
+        }
+    }
+
+    /**
+     * Detaches the call in flight for {@code key}, if any; callers already waiting still
+     * get its result.
+     */
+    public void forget(K key) {
+        calls.remove(key);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V, E extends Exception> V await(CompletableFuture<V> flight) throws E {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+
+            if (cause instanceof Error error) {
+                throw error;
+            }
+
+            // the leader's call could only throw E
+            throw (E) cause;
+        }
+    }
+}
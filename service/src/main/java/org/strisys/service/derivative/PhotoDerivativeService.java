@@ -0,0 +1,191 @@
+package org.strisys.service.derivative;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.strisys.data.PhotoDataService;
+import org.strisys.data.routing.PrimaryReads;
+import org.strisys.model.entity.Photo;
+import org.strisys.model.entity.PhotoVariant;
+
+/**
+ * Generates the derived {@link PhotoVariant}s of an uploaded photo on a small bounded
+ * pool, using only JDK image I/O. The original is spooled to a temporary file and
+ * decoded with source subsampling, so a large upload is never fully decoded on the heap.
+ * When the queue is full the work is dropped and the photo is served at original size.
+ * With {@code spring.threads.virtual.enabled} the workers are virtual threads, still
+ * bounded by {@code photo.derivatives.threads}. The original is read from the primary,
+ * since a replica may not have the upload yet.
+ */
+@Slf4j
+@Service
+public class PhotoDerivativeService implements DisposableBean {
+    private static final List<PhotoVariant> DERIVED = Arrays.stream(PhotoVariant.values())
+            .filter(PhotoVariant::isDerived)
+            .sorted(Comparator.comparingInt(PhotoVariant::getMaxEdge).reversed())
+            .toList();
+
+    private final PhotoDataService ds;
+    private final PrimaryReads primary;
+    private final ThreadPoolExecutor executor;
+
+    public PhotoDerivativeService(
+            PhotoDataService ds,
+            PrimaryReads primary,
+            @Value("${photo.derivatives.threads:2}") int threads,
+            @Value("${photo.derivatives.queue-capacity:256}") int queueCapacity,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+
+        this.ds = ds;
+        this.primary = primary;
+        this.executor = new ThreadPoolExecutor(
+                threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                virtualThreads
+                        ? Thread.ofVirtual().name("photo-derivative-", 1).factory()
+                        : new CustomizableThreadFactory("photo-derivative-"));
+    }
+
+    public void schedule(Photo photo) {
+        if (photo.getIsNull() || (photo.getSize() == null) || (photo.getSize() <= 0)) {
+            return;
+        }
+
+        String uuid = photo.getUuid();
+        long size = photo.getSize();
+
+        try {
+            executor.execute(() -> generate(uuid, size));
+        } catch (RejectedExecutionException e) {
+            log.warn("Derivative queue full, photo {} will be served at original size", uuid);
+        }
+    }
+
+    void generate(String uuid, long size) {
+        Path source = null;
+
+        try {
+            source = Files.createTempFile("photo-", ".src");
+
+            try (OutputStream out = Files.newOutputStream(source)) {
+                primary.get(() -> ds.writeFile(uuid, 0, size, out));
+            }
+
+            generate(uuid, source);
+        } catch (Exception e) {
+            log.warn("Failed to generate derivatives for photo {}", uuid, e);
+        } finally {
+            deleteQuietly(source);
+        }
+    }
+
+    private void generate(String uuid, Path source) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(source.toFile())) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+
+            if (!readers.hasNext()) {
+                log.warn("No image reader for photo {}", uuid);
+                return;
+            }
+
+            ImageReader reader = readers.next();
+
+            try {
+                reader.setInput(in, true, true);
+
+                // decode at no more than twice the largest variant, then scale down from there
+                int longEdge = Math.max(reader.getWidth(0), reader.getHeight(0));
+                int subsampling = Math.max(1, longEdge / (DERIVED.get(0).getMaxEdge() * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+
+                BufferedImage decoded = reader.read(0, param);
+                String format = reader.getFormatName().toLowerCase(Locale.ROOT);
+                boolean alpha = decoded.getColorModel().hasAlpha() && !format.startsWith("jp");
+
+                for (PhotoVariant variant : DERIVED) {
+                    byte[] encoded = encode(scale(decoded, variant.getMaxEdge(), alpha), format);
+
+                    if (primary.get(() -> ds.tryGet(uuid)).getIsNull()) {
+                        return;
+                    }
+
+                    ds.saveVariant(uuid, variant, new ByteArrayInputStream(encoded), encoded.length);
+                }
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage scale(BufferedImage source, int maxEdge, boolean alpha) {
+        double ratio = Math.min(1.0, (double) maxEdge / Math.max(source.getWidth(), source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * ratio));
+
+        BufferedImage target = new BufferedImage(width, height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+
+        return target;
+    }
+
+    private static byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        if (!ImageIO.write(image, format, out)) {
+            throw new IOException("No image writer for format " + format);
+        }
+
+        return out.toByteArray();
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.debug("Could not delete {}", path, e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
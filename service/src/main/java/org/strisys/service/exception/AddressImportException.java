@@ -0,0 +1,7 @@
+package org.strisys.service.exception;
+
+public class AddressImportException extends RuntimeException {
+    public AddressImportException(String message) {
+        super(message);
+    }
+}
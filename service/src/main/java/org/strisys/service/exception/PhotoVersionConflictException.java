@@ -0,0 +1,7 @@
+package org.strisys.service.exception;
+
+public class PhotoVersionConflictException extends RuntimeException {
+    public PhotoVersionConflictException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
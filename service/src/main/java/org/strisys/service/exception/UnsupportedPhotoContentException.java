@@ -0,0 +1,7 @@
+package org.strisys.service.exception;
+
+public class UnsupportedPhotoContentException extends RuntimeException {
+    public UnsupportedPhotoContentException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package org.strisys.service.exception;
+
+public class UploadQueueFullException extends RuntimeException {
+    public UploadQueueFullException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package org.strisys.service.imports;
+
+/**
+ * Body formats accepted by the bulk address import.
+ */
+public enum AddressImportFormat {
+    /** Comma separated with a header row naming {@code AddressState} properties. */
+    CSV,
+    /** One JSON {@code AddressState} object per line. */
+    NDJSON
+}
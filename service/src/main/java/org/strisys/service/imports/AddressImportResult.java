@@ -0,0 +1,12 @@
+package org.strisys.service.imports;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk import. {@code errors} holds at most the configured number of
+ * rejections; {@code rejected} counts all of them.
+ */
+public record AddressImportResult(long imported, long rejected, List<Error> errors) {
+    public record Error(long line, String message) {
+    }
+}
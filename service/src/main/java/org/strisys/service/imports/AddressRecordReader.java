@@ -0,0 +1,112 @@
+package org.strisys.service.imports;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.strisys.model.entity.AddressState;
+
+/**
+ * Pulls one address at a time off an import body, so only the current line is ever
+ * held in memory, and never more than {@link #MAX_RECORD_LENGTH} characters of it. A
+ * record that cannot be parsed, or is longer than that, is returned with an error rather
+ * than ending the import.
+ */
+public abstract class AddressRecordReader implements Closeable {
+    public static final int MAX_RECORD_LENGTH = 64 * 1024;
+
+    private final Reader reader;
+    private final char[] buffer = new char[8192];
+    private int position;
+    private int limit;
+    private long lineNumber;
+
+    public record Record(long line, AddressState state, String error) {
+    }
+
+    protected AddressRecordReader(InputStream in) {
+        this.reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+    }
+
+    public static AddressRecordReader create(AddressImportFormat format, InputStream in, ObjectReader json) {
+        return switch (format) {
+            case CSV -> new CsvAddressRecordReader(in);
+            case NDJSON -> new NdjsonAddressRecordReader(in, json);
+        };
+    }
+
+    /**
+     * @return the next record, or {@code null} at the end of the body
+     */
+    public abstract Record next() throws IOException;
+
+    /**
+     * @return the next line without its terminator, or {@code null} at the end of the
+     * body; a line longer than {@link #MAX_RECORD_LENGTH} is cut to one character more
+     * than that, and the rest of it skipped, so callers can tell it was too long
+     */
+    protected String readLine() throws IOException {
+        StringBuilder line = new StringBuilder();
+        boolean read = false;
+
+        while (true) {
+            if ((position == limit) && !fill()) {
+                break;
+            }
+
+            read = true;
+            char c = buffer[position++];
+
+            if (c == '\n') {
+                break;
+            }
+
+            if (line.length() <= MAX_RECORD_LENGTH) {
+                line.append(c);
+            }
+        }
+
+        if (!read) {
+            return null;
+        }
+
+        int end = line.length();
+
+        if ((end > 0) && (end <= MAX_RECORD_LENGTH) && (line.charAt(end - 1) == '\r')) {
+            line.setLength(end - 1);
+        }
+
+        lineNumber++;
+        return line.toString();
+    }
+
+    protected static boolean isTooLong(CharSequence record) {
+        return record.length() > MAX_RECORD_LENGTH;
+    }
+
+    private boolean fill() throws IOException {
+        int count = reader.read(buffer, 0, buffer.length);
+
+        if (count <= 0) {
+            return false;
+        }
+
+        position = 0;
+        limit = count;
+
+        return true;
+    }
+
+    protected long getLineNumber() {
+        return lineNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
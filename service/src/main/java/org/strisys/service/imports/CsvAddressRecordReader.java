@@ -0,0 +1,167 @@
+package org.strisys.service.imports;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import org.strisys.model.entity.AddressState;
+import org.strisys.service.exception.AddressImportException;
+
+/**
+ * RFC 4180 style reader: fields may be quoted, quotes inside them doubled, and a quoted
+ * field may span lines, up to {@link #MAX_RECORD_LENGTH} characters for the whole record,
+ * so a stray quote cannot pull the rest of the body onto the heap. The header names {@link AddressState} properties, matched
+ * ignoring case, underscores and dashes; unknown columns are skipped.
+ */
+class CsvAddressRecordReader extends AddressRecordReader {
+    private static final Map<String, BiConsumer<AddressState, String>> COLUMNS = Map.of(
+            "street1", AddressState::setStreet1,
+            "street2", AddressState::setStreet2,
+            "unitnumber", AddressState::setUnitNumber,
+            "city", AddressState::setCity,
+            "state", AddressState::setState,
+            "zipcode", AddressState::setZipCode,
+            "addresstype", AddressState::setAddressType);
+
+    private List<BiConsumer<AddressState, String>> setters;
+
+    CsvAddressRecordReader(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public Record next() throws IOException {
+        if (setters == null) {
+            setters = readHeader();
+        }
+
+        String line;
+
+        while ((line = readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+
+            long start = getLineNumber();
+
+            if (isTooLong(line)) {
+                return new Record(start, null, String.format("Record exceeds %d characters", MAX_RECORD_LENGTH));
+            }
+
+            List<String> fields = parse(line);
+
+            if (fields == null) {
+                return new Record(start, null, "Unterminated quoted field");
+            }
+
+            if (fields.size() != setters.size()) {
+                return new Record(start, null, String.format("Expected %d fields but found %d", setters.size(), fields.size()));
+            }
+
+            AddressState state = new AddressState();
+
+            for (int i = 0; i < fields.size(); i++) {
+                BiConsumer<AddressState, String> setter = setters.get(i);
+                String value = fields.get(i);
+
+                if ((setter != null) && !value.isEmpty()) {
+                    setter.accept(state, value);
+                }
+            }
+
+            return new Record(start, state, null);
+        }
+
+        return null;
+    }
+
+    private List<BiConsumer<AddressState, String>> readHeader() throws IOException {
+        String line;
+
+        do {
+            line = readLine();
+        } while ((line != null) && line.isBlank());
+
+        List<String> names = ((line != null) && !isTooLong(line)) ? parse(line) : null;
+
+        if (names == null) {
+            throw new AddressImportException("CSV body must start with a header row");
+        }
+
+        List<BiConsumer<AddressState, String>> header = new ArrayList<>(names.size());
+
+        for (String name : names) {
+            header.add(COLUMNS.get(name.replaceAll("[\\s_\\-]", "").toLowerCase(Locale.ROOT)));
+        }
+
+        if (header.stream().allMatch(setter -> setter == null)) {
+            throw new AddressImportException("CSV header names no address columns: " + line);
+        }
+
+        return header;
+    }
+
+    /**
+     * @return the fields of the record starting at {@code line}, reading further lines
+     * while a quoted field is open; {@code null} if the body ends inside quotes or the
+     * record grows past {@link #MAX_RECORD_LENGTH} before they close
+     */
+    private List<String> parse(String line) throws IOException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        int length = line.length();
+        int i = 0;
+
+        while (true) {
+            if (i == line.length()) {
+                if (!quoted) {
+                    break;
+                }
+
+                line = readLine();
+
+                if (line == null) {
+                    return null;
+                }
+
+                length += line.length() + 1;
+
+                if (length > MAX_RECORD_LENGTH) {
+                    return null;
+                }
+
+                field.append('\n');
+                i = 0;
+                continue;
+            }
+
+            char c = line.charAt(i++);
+
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if ((i < line.length()) && (line.charAt(i) == '"')) {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+
+        fields.add(field.toString().trim());
+        return fields;
+    }
+}
@@ -0,0 +1,43 @@
+package org.strisys.service.imports;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.strisys.model.entity.AddressState;
+
+class NdjsonAddressRecordReader extends AddressRecordReader {
+    private final ObjectReader json;
+
+    NdjsonAddressRecordReader(InputStream in, ObjectReader json) {
+        super(in);
+        this.json = json;
+    }
+
+    @Override
+    public Record next() throws IOException {
+        String line;
+
+        while ((line = readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+
+            if (isTooLong(line)) {
+                return new Record(getLineNumber(), null, String.format("Record exceeds %d characters", MAX_RECORD_LENGTH));
+            }
+
+            try {
+                AddressState state = json.readValue(line);
+                return (state != null)
+                        ? new Record(getLineNumber(), state, null)
+                        : new Record(getLineNumber(), null, "Expected a JSON object");
+            } catch (JsonProcessingException e) {
+                return new Record(getLineNumber(), null, e.getOriginalMessage());
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,47 @@
+package org.strisys.service.lookup;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.strisys.model.id.TimeOrderedUuid;
+
+/**
+ * Outcome of a multi-get: {@code found} in the order the identifiers were requested,
+ * each once, and the requested identifiers that matched nothing, as given.
+ */
+public record LookupResult<T>(List<T> found, List<String> missing) {
+    /**
+     * @param byId matches keyed by {@link TimeOrderedUuid#canonical} UUID
+     */
+    public static <T> LookupResult<T> of(List<String> ids, Map<String, T> byId) {
+        List<T> found = new ArrayList<>(byId.size());
+        List<String> missing = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+
+        for (String id : ids) {
+            String key = (id != null) ? TimeOrderedUuid.canonical(id) : null;
+
+            if (!seen.add(key)) {
+                continue;
+            }
+
+            T value = (key != null) ? byId.get(key) : null;
+
+            if (value != null) {
+                found.add(value);
+            } else {
+                missing.add(id);
+            }
+        }
+
+        return new LookupResult<>(found, missing);
+    }
+
+    public <R> LookupResult<R> map(Function<T, R> mapper) {
+        return new LookupResult<>(found.stream().map(mapper).toList(), missing);
+    }
+}
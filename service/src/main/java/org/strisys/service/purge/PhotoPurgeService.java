@@ -0,0 +1,100 @@
+package org.strisys.service.purge;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.strisys.data.PhotoDataService;
+
+/**
+ * Hard-deletes tombstoned photos in the background, every {@code photo.purge.interval},
+ * in transactions of {@code photo.purge.batch-size} photos. Tombstones younger than
+ * {@code photo.purge.grace} are left alone so downloads that began before the delete
+ * can finish.
+ */
+@Slf4j
+@Service
+public class PhotoPurgeService implements DisposableBean {
+    private final PhotoDataService ds;
+    private final boolean enabled;
+    private final Duration interval;
+    private final Duration grace;
+    private final int batchSize;
+    private final Counter purged;
+    private ScheduledExecutorService executor;
+
+    public PhotoPurgeService(
+            PhotoDataService ds,
+            MeterRegistry registry,
+            @Value("${photo.purge.enabled:true}") boolean enabled,
+            @Value("${photo.purge.interval:1m}") Duration interval,
+            @Value("${photo.purge.grace:5m}") Duration grace,
+            @Value("${photo.purge.batch-size:500}") int batchSize) {
+
+        this.ds = ds;
+        this.enabled = enabled;
+        this.interval = interval;
+        this.grace = grace;
+        this.batchSize = batchSize;
+        this.purged = Counter.builder("photo.purged")
+                .description("Tombstoned photos hard-deleted by the background purge")
+                .register(registry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (!enabled || (executor != null)) {
+            return;
+        }
+
+        executor = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("photo-purge-"));
+        executor.scheduleWithFixedDelay(this::purge, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Purges batch after batch until one comes back short.
+     *
+     * @return the number of photos purged
+     */
+    public int purge() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(grace);
+        int total = 0;
+
+        try {
+            int count;
+
+            do {
+                count = ds.purge(cutoff, batchSize);
+                total += count;
+            } while (count == batchSize);
+        } catch (RuntimeException e) {
+            log.warn("Photo purge failed after {} photos, retrying in {}", total, interval, e);
+        }
+
+        purged.increment(total);
+
+        if (total > 0) {
+            log.info("Purged {} deleted photos", total);
+        }
+
+        return total;
+    }
+
+    @Override
+    public synchronized void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
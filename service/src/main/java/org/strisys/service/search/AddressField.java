@@ -0,0 +1,47 @@
+package org.strisys.service.search;
+
+import java.util.Locale;
+import java.util.function.Function;
+
+import org.strisys.model.entity.Address;
+
+/**
+ * The address fields autocomplete can search. Street names and cities match from the
+ * start of any word; postal codes only from their first character, ignoring spacing.
+ */
+public enum AddressField {
+    CITY(Address::getCity, true),
+    STREET(Address::getStreetName, true),
+    POSTAL_CODE(Address::getPostalCode, false);
+
+    private final Function<Address, String> getter;
+    private final boolean words;
+
+    AddressField(Function<Address, String> getter, boolean words) {
+        this.getter = getter;
+        this.words = words;
+    }
+
+    public String get(Address address) {
+        return getter.apply(address);
+    }
+
+    public boolean isWords() {
+        return words;
+    }
+
+    /**
+     * @return the field named like {@code city} or {@code postal-code}, or {@code null}
+     */
+    public static AddressField tryParse(String name) {
+        String normalized = name.trim().replace('-', '_').toUpperCase(Locale.ROOT);
+
+        for (AddressField field : values()) {
+            if (field.name().equals(normalized)) {
+                return field;
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,18 @@
+package org.strisys.service.search;
+
+import org.strisys.model.entity.Address;
+
+/**
+ * What autocomplete returns for an address; held by the index instead of the entity.
+ */
+public record AddressMatch(String uuid, String houseNumber, String streetName, String streetSuffix, String city, String postalCode) {
+    public static AddressMatch of(Address address) {
+        return new AddressMatch(
+                address.getUUID(),
+                address.getHouseNumber(),
+                address.getStreetName(),
+                address.getStreetSuffix(),
+                address.getCity(),
+                address.getPostalCode());
+    }
+}
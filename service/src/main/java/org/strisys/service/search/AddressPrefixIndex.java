@@ -0,0 +1,148 @@
+package org.strisys.service.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import org.springframework.stereotype.Component;
+import org.strisys.model.entity.Address;
+
+/**
+ * In-memory prefix index for address autocomplete. Each {@link AddressField} keeps its
+ * normalized values (lower case, accents and punctuation stripped) in a sorted map, so a
+ * prefix lookup is a range scan costing a logarithmic seek plus the matches returned, and
+ * writers add keys concurrently with readers. Matches come back in alphabetical order of
+ * the normalized value; keys are the value, a separator sorting below every character and
+ * the address UUID, so an exact match precedes the longer values that extend it.
+ * <p>
+ * The index lives in this process only and is not persisted; {@code AddressService}
+ * fills it at startup and adds every address it stores afterwards.
+ */
+@Component
+public class AddressPrefixIndex {
+    private static final char SEPARATOR = '\u0000';
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final Map<AddressField, ConcurrentSkipListMap<String, AddressMatch>> keys = new EnumMap<>(AddressField.class);
+    private final AtomicInteger size = new AtomicInteger();
+
+    private record Candidate(String key, AddressMatch match) {
+    }
+
+    public AddressPrefixIndex() {
+        for (AddressField field : AddressField.values()) {
+            keys.put(field, new ConcurrentSkipListMap<>());
+        }
+    }
+
+    public void add(Address address) {
+        AddressMatch match = AddressMatch.of(address);
+        boolean added = false;
+
+        for (AddressField field : AddressField.values()) {
+            for (String key : getKeys(field, field.get(address))) {
+                added |= keys.get(field).put(key + SEPARATOR + match.uuid(), match) == null;
+            }
+        }
+
+        if (added) {
+            size.incrementAndGet();
+        }
+    }
+
+    public void addAll(List<Address> addresses) {
+        addresses.forEach(this::add);
+    }
+
+    /**
+     * @return the number of addresses added
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * @param field the field to match, or {@code null} for any of them
+     * @return up to {@code limit} distinct addresses with a value starting with
+     *         {@code prefix}, in alphabetical order of the matching value
+     */
+    public List<AddressMatch> search(String prefix, AddressField field, int limit) {
+        String normalized = normalize(prefix);
+
+        if (normalized.isEmpty() || (limit <= 0)) {
+            return List.of();
+        }
+
+        List<Candidate> candidates = new ArrayList<>();
+
+        for (AddressField searched : (field != null) ? List.of(field) : List.of(AddressField.values())) {
+            String start = (searched.isWords()) ? normalized : compact(normalized);
+            int found = 0;
+
+            for (Map.Entry<String, AddressMatch> entry : keys.get(searched).subMap(start, start + Character.MAX_VALUE).entrySet()) {
+                candidates.add(new Candidate(entry.getKey(), entry.getValue()));
+
+                // one address can match through several words; over-collect to still fill the limit
+                if (++found >= limit * 2) {
+                    break;
+                }
+            }
+        }
+
+        candidates.sort(Comparator.comparing(Candidate::key));
+        Map<String, AddressMatch> matches = new LinkedHashMap<>();
+
+        for (Candidate candidate : candidates) {
+            matches.putIfAbsent(candidate.match().uuid(), candidate.match());
+
+            if (matches.size() == limit) {
+                break;
+            }
+        }
+
+        return List.copyOf(matches.values());
+    }
+
+    private static List<String> getKeys(AddressField field, String value) {
+        String normalized = normalize(value);
+
+        if (normalized.isEmpty()) {
+            return List.of();
+        }
+
+        if (!field.isWords()) {
+            return List.of(compact(normalized));
+        }
+
+        List<String> keys = new ArrayList<>();
+        keys.add(normalized);
+
+        for (int i = normalized.indexOf(' '); i >= 0; i = normalized.indexOf(' ', i + 1)) {
+            keys.add(normalized.substring(i + 1));
+        }
+
+        return keys;
+    }
+
+    static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+
+        String stripped = MARKS.matcher(Normalizer.normalize(value, Normalizer.Form.NFD)).replaceAll("");
+        return SEPARATORS.matcher(stripped.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    private static String compact(String normalized) {
+        return normalized.replace(" ", "");
+    }
+}
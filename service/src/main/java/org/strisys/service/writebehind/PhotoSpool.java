@@ -0,0 +1,190 @@
+package org.strisys.service.writebehind;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.FileSystemResource;
+import org.strisys.model.entity.PhotoUpload;
+
+/**
+ * Durable staging area for write-behind uploads. Each upload is a {@code <uuid>.bin} data
+ * file, forced to disk, and a {@code <uuid>.properties} descriptor that is atomically
+ * moved into place last; an upload counts as staged once its descriptor exists, so a
+ * crash mid-write leaves nothing to recover but a partial file to sweep. The descriptor
+ * is forced before the move and the directory after it, so a rename that survives a
+ * crash never points at empty contents; a descriptor that is unreadable anyway is
+ * quarantined by {@link #recover()} rather than failing startup.
+ */
+@Slf4j
+class PhotoSpool {
+    private static final String DATA = ".bin";
+    private static final String DESCRIPTOR = ".properties";
+    private static final String FAILED = ".failed";
+    private static final String CORRUPT = ".corrupt";
+
+    private final Path directory;
+    private final int bufferSize;
+
+    record Staged(String uuid, String fileName, String contentType, long length, Path data) {
+        PhotoUpload toUpload() {
+            return new PhotoUpload(fileName, contentType, length, new FileSystemResource(data));
+        }
+    }
+
+    PhotoSpool(Path directory, int bufferSize) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.bufferSize = bufferSize;
+    }
+
+    Staged stage(String uuid, String fileName, String contentType, InputStream in) throws IOException {
+        Path data = directory.resolve(uuid + DATA);
+        long length = 0;
+
+        try (FileChannel channel = FileChannel.open(data, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+             OutputStream out = Channels.newOutputStream(channel)) {
+
+            byte[] buffer = new byte[bufferSize];
+            int read;
+
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                length += read;
+            }
+
+            channel.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(data);
+            throw e;
+        }
+
+        Properties descriptor = new Properties();
+        descriptor.setProperty("fileName", (fileName != null) ? fileName : "");
+        descriptor.setProperty("contentType", contentType);
+        descriptor.setProperty("length", Long.toString(length));
+
+        Path temporary = directory.resolve(uuid + DESCRIPTOR + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            Writer writer = Channels.newWriter(channel, StandardCharsets.UTF_8);
+            descriptor.store(writer, null);
+            writer.flush();
+            channel.force(true);
+        }
+
+        Files.move(temporary, directory.resolve(uuid + DESCRIPTOR), StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory();
+
+        return new Staged(uuid, fileName, contentType, length, data);
+    }
+
+    /**
+     * Staged uploads left by a previous run, oldest first; time-ordered identifiers make
+     * file-name order arrival order. Partial writes are deleted and unreadable uploads
+     * are set aside as {@code .corrupt}.
+     */
+    List<Staged> recover() throws IOException {
+        List<Staged> staged = new ArrayList<>();
+
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : files.sorted().toList()) {
+                String name = path.getFileName().toString();
+
+                if (name.endsWith(DESCRIPTOR)) {
+                    String uuid = name.substring(0, name.length() - DESCRIPTOR.length());
+
+                    try {
+                        staged.add(read(uuid));
+                    } catch (IOException | RuntimeException e) {
+                        log.error("Spooled upload {} is unreadable, setting it aside", uuid, e);
+                        setAside(uuid, CORRUPT);
+                    }
+                } else if (name.endsWith(".tmp") || (name.endsWith(DATA) && !Files.exists(descriptorOf(name)))) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+
+        return staged;
+    }
+
+    void delete(Staged staged) {
+        try {
+            Files.deleteIfExists(directory.resolve(staged.uuid() + DESCRIPTOR));
+            Files.deleteIfExists(staged.data());
+        } catch (IOException e) {
+            log.warn("Could not delete spooled upload {}", staged.uuid(), e);
+        }
+    }
+
+    /**
+     * Sets an upload the writer gave up on aside, out of reach of recovery, for inspection.
+     */
+    void markFailed(Staged staged) {
+        setAside(staged.uuid(), FAILED);
+    }
+
+    private void setAside(String uuid, String suffix) {
+        try {
+            Files.move(directory.resolve(uuid + DESCRIPTOR), directory.resolve(uuid + DESCRIPTOR + suffix), StandardCopyOption.REPLACE_EXISTING);
+
+            if (Files.exists(directory.resolve(uuid + DATA))) {
+                Files.move(directory.resolve(uuid + DATA), directory.resolve(uuid + DATA + suffix), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            log.warn("Could not set aside upload {}", uuid, e);
+        }
+    }
+
+    private void forceDirectory() {
+        // makes the rename durable; not every platform can open a directory for this
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("Could not force spool directory {}", directory, e);
+        }
+    }
+
+    private Staged read(String uuid) throws IOException {
+        Properties descriptor = new Properties();
+
+        try (Reader reader = Files.newBufferedReader(directory.resolve(uuid + DESCRIPTOR), StandardCharsets.UTF_8)) {
+            descriptor.load(reader);
+        }
+
+        String length = descriptor.getProperty("length");
+        Path data = directory.resolve(uuid + DATA);
+
+        if ((length == null) || (descriptor.getProperty("contentType") == null)) {
+            throw new IOException("Incomplete descriptor");
+        }
+
+        if (!Files.exists(data) || (Files.size(data) != Long.parseLong(length))) {
+            throw new IOException(String.format("Expected %s bytes of data", length));
+        }
+
+        return new Staged(uuid,
+                descriptor.getProperty("fileName"),
+                descriptor.getProperty("contentType"),
+                Long.parseLong(length),
+                data);
+    }
+
+    private Path descriptorOf(String dataName) {
+        return directory.resolve(dataName.substring(0, dataName.length() - DATA.length()) + DESCRIPTOR);
+    }
+}
@@ -0,0 +1,14 @@
+package org.strisys.service.writebehind;
+
+/**
+ * Where a write-behind upload stands. {@code error} is only set for {@link State#FAILED}.
+ */
+public record PhotoUploadStatus(String uuid, State state, String error) {
+    public enum State {
+        PENDING, COMMITTED, FAILED, UNKNOWN
+    }
+
+    static PhotoUploadStatus of(String uuid, State state) {
+        return new PhotoUploadStatus(uuid, state, null);
+    }
+}
@@ -0,0 +1,357 @@
+package org.strisys.service.writebehind;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.strisys.data.PhotoDataService;
+import org.strisys.data.routing.PrimaryReads;
+import org.strisys.model.entity.Photo;
+import org.strisys.model.id.TimeOrderedUuid;
+import org.strisys.service.cache.PhotoListingCache;
+import org.strisys.service.derivative.PhotoDerivativeService;
+import org.strisys.service.exception.UploadQueueFullException;
+
+/**
+ * Write-behind ingestion: an upload is staged in the {@link PhotoSpool} and acknowledged
+ * at once, and a single writer thread drains the queue into the database in batches of
+ * up to {@code photo.upload.write-behind.batch-size}, so a burst holds one pooled
+ * connection at a time instead of one per request. Uploads still spooled at shutdown
+ * are recovered and written on the next start.
+ * <p>
+ * Failures the database may recover from (no connection, timeouts, a restart) put the
+ * batch back at the head of the queue and pause the writer, doubling from
+ * {@code retry-backoff} up to {@code retry-max-backoff}. Any other failure retries the
+ * batch one upload at a time, and only the uploads that still fail are set aside.
+ * <p>
+ * A batch may have committed even though its spool files survived: the process died
+ * before deleting them, or the commit was acknowledged by an error that looked
+ * transient. Recovered and retried uploads are therefore looked up on the primary
+ * first, and those already stored are treated as committed rather than written again.
+ * <p>
+ * Off unless {@code photo.upload.write-behind.enabled} is set.
+ */
+@Slf4j
+@Service
+public class PhotoWriteBehindService implements DisposableBean {
+    private final PhotoDataService ds;
+    private final PrimaryReads primary;
+    private final PhotoListingCache listing;
+    private final PhotoDerivativeService derivatives;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int maxPending;
+    private final Duration retryBackoff;
+    private final Duration retryMaxBackoff;
+
+    private final BlockingDeque<PhotoSpool.Staged> queue = new LinkedBlockingDeque<>();
+    private final Map<String, PhotoSpool.Staged> pending = new ConcurrentHashMap<>();
+    private final Set<String> unconfirmed = ConcurrentHashMap.newKeySet();
+    private final Cache<String, String> failures = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofHours(1))
+            .maximumSize(10_000)
+            .build();
+
+    private PhotoSpool spool;
+    private Thread writer;
+    private final CountDownLatch stopping = new CountDownLatch(1);
+    private volatile boolean running = true;
+    private Duration backoff;
+
+    public PhotoWriteBehindService(
+            PhotoDataService ds,
+            PrimaryReads primary,
+            PhotoListingCache listing,
+            PhotoDerivativeService derivatives,
+            @Value("${photo.upload.write-behind.enabled:false}") boolean enabled,
+            @Value("${photo.upload.write-behind.directory:${java.io.tmpdir}/photo-spool}") Path directory,
+            @Value("${photo.upload.write-behind.batch-size:50}") int batchSize,
+            @Value("${photo.upload.write-behind.max-pending:1000}") int maxPending,
+            @Value("${photo.upload.write-behind.retry-backoff:1s}") Duration retryBackoff,
+            @Value("${photo.upload.write-behind.retry-max-backoff:30s}") Duration retryMaxBackoff,
+            @Value("${photo.upload.buffer-size:8192}") int bufferSize,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) throws IOException {
+
+        this.ds = ds;
+        this.primary = primary;
+        this.listing = listing;
+        this.derivatives = derivatives;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxPending = maxPending;
+        this.retryBackoff = retryBackoff;
+        this.retryMaxBackoff = retryMaxBackoff;
+        this.backoff = retryBackoff;
+
+        if (!enabled) {
+            return;
+        }
+
+        this.spool = new PhotoSpool(directory, bufferSize);
+
+        for (PhotoSpool.Staged staged : spool.recover()) {
+            pending.put(staged.uuid(), staged);
+            unconfirmed.add(staged.uuid());
+            queue.add(staged);
+        }
+
+        if (!pending.isEmpty()) {
+            log.info("Recovered {} spooled uploads from {}", pending.size(), directory);
+        }
+
+        this.writer = (virtualThreads ? Thread.ofVirtual() : Thread.ofPlatform().daemon())
+                .name("photo-write-behind")
+                .start(this::drain);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Stages an already validated upload and queues it for the writer.
+     *
+     * @throws UploadQueueFullException when {@code max-pending} uploads are waiting
+     */
+    public PhotoUploadStatus stage(String fileName, String contentType, InputStream in) throws IOException {
+        if (pending.size() >= maxPending) {
+            throw new UploadQueueFullException(String.format("%d uploads are waiting to be written", pending.size()));
+        }
+
+        PhotoSpool.Staged staged = spool.stage(TimeOrderedUuid.next(), fileName, contentType, in);
+        pending.put(staged.uuid(), staged);
+        queue.add(staged);
+
+        return PhotoUploadStatus.of(staged.uuid(), PhotoUploadStatus.State.PENDING);
+    }
+
+    public PhotoUploadStatus getStatus(String uuid) {
+        if (pending.containsKey(uuid)) {
+            return PhotoUploadStatus.of(uuid, PhotoUploadStatus.State.PENDING);
+        }
+
+        String error = failures.getIfPresent(uuid);
+
+        if (error != null) {
+            return new PhotoUploadStatus(uuid, PhotoUploadStatus.State.FAILED, error);
+        }
+
+        // just committed rows may not have reached a replica yet
+        if (!primary.get(() -> ds.tryGet(uuid)).getIsNull()) {
+            return PhotoUploadStatus.of(uuid, PhotoUploadStatus.State.COMMITTED);
+        }
+
+        return PhotoUploadStatus.of(uuid, PhotoUploadStatus.State.UNKNOWN);
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    private void drain() {
+        List<PhotoSpool.Staged> batch = new ArrayList<>(batchSize);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                PhotoSpool.Staged first = queue.poll(1, TimeUnit.SECONDS);
+
+                if (first == null) {
+                    continue;
+                }
+
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<PhotoSpool.Staged> batch) throws InterruptedException {
+        List<PhotoSpool.Staged> unsaved = batch;
+
+        try {
+            unsaved = skipStored(batch);
+
+            if (!unsaved.isEmpty()) {
+                committed(unsaved, save(unsaved));
+            }
+
+            return;
+        } catch (RuntimeException e) {
+            if (isTransient(e)) {
+                retryLater(unsaved, e);
+                return;
+            }
+
+            if (unsaved.size() == 1) {
+                failed(unsaved.get(0), e);
+                return;
+            }
+
+            log.warn("Write-behind batch of {} failed, retrying one at a time", unsaved.size(), e);
+        }
+
+        // isolate the upload that broke the batch; the rest still commit
+        for (int i = 0; i < unsaved.size(); i++) {
+            PhotoSpool.Staged staged = unsaved.get(i);
+
+            if (!pending.containsKey(staged.uuid())) {
+                continue;
+            }
+
+            try {
+                List<PhotoSpool.Staged> single = skipStored(List.of(staged));
+
+                if (!single.isEmpty()) {
+                    committed(single, save(single));
+                }
+            } catch (RuntimeException e) {
+                if (isTransient(e)) {
+                    retryLater(unsaved.subList(i, unsaved.size()), e);
+                    return;
+                }
+
+                failed(staged, e);
+            }
+        }
+    }
+
+    /**
+     * Completes the uploads whose earlier write may have committed and that the primary
+     * already holds; a replay would only fail on the unique uuid.
+     *
+     * @return the uploads still to be saved
+     */
+    private List<PhotoSpool.Staged> skipStored(List<PhotoSpool.Staged> batch) {
+        if (unconfirmed.isEmpty()) {
+            return batch;
+        }
+
+        List<PhotoSpool.Staged> unsaved = new ArrayList<>(batch.size());
+
+        for (PhotoSpool.Staged staged : batch) {
+            if (!unconfirmed.contains(staged.uuid())) {
+                unsaved.add(staged);
+                continue;
+            }
+
+            Photo stored = primary.get(() -> ds.tryGet(staged.uuid()));
+            unconfirmed.remove(staged.uuid());
+
+            if (stored.getIsNull()) {
+                unsaved.add(staged);
+            } else {
+                log.info("Write-behind upload {} was already committed", staged.uuid());
+                committed(List.of(staged), List.of(stored));
+            }
+        }
+
+        return unsaved;
+    }
+
+    private List<Photo> save(List<PhotoSpool.Staged> batch) {
+        return ds.saveAll(batch.stream().map(PhotoSpool.Staged::uuid).toList(),
+                batch.stream().map(PhotoSpool.Staged::toUpload).toList());
+    }
+
+    /**
+     * Puts the uploads back at the head of the queue, in order, and pauses the writer.
+     * At shutdown they are left spooled for the next start instead.
+     */
+    private void retryLater(List<PhotoSpool.Staged> batch, RuntimeException e) throws InterruptedException {
+        log.warn("Write-behind of {} uploads failed transiently, retrying in {}", batch.size(), backoff, e);
+
+        if (!running) {
+            return;
+        }
+
+        for (int i = batch.size() - 1; i >= 0; i--) {
+            PhotoSpool.Staged staged = batch.get(i);
+
+            // skipStored may have completed some before it failed
+            if (pending.containsKey(staged.uuid())) {
+                unconfirmed.add(staged.uuid());
+                queue.addFirst(staged);
+            }
+        }
+
+        stopping.await(backoff.toMillis(), TimeUnit.MILLISECONDS);
+        backoff = (backoff.compareTo(retryMaxBackoff.dividedBy(2)) < 0) ? backoff.multipliedBy(2) : retryMaxBackoff;
+    }
+
+    static boolean isTransient(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if ((cause instanceof TransientDataAccessException)
+                    || (cause instanceof RecoverableDataAccessException)
+                    || (cause instanceof DataAccessResourceFailureException)
+                    || (cause instanceof CannotCreateTransactionException)
+                    || (cause instanceof SQLTransientException)
+                    || (cause instanceof SQLRecoverableException)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void committed(List<PhotoSpool.Staged> batch, List<Photo> photos) {
+        backoff = retryBackoff;
+
+        for (PhotoSpool.Staged staged : batch) {
+            spool.delete(staged);
+            pending.remove(staged.uuid());
+        }
+
+        listing.invalidate();
+        photos.forEach(derivatives::schedule);
+    }
+
+    private void failed(PhotoSpool.Staged staged, RuntimeException e) {
+        log.error("Write-behind upload {} failed", staged.uuid(), e);
+        failures.put(staged.uuid(), String.valueOf(e.getMessage()));
+        spool.markFailed(staged);
+        pending.remove(staged.uuid());
+    }
+
+    /**
+     * Lets the writer finish the batch in hand; anything still queued stays spooled for
+     * the next start.
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        stopping.countDown();
+        queue.clear();
+
+        if (writer != null) {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        }
+    }
+}
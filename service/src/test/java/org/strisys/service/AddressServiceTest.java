@@ -0,0 +1,79 @@
+package org.strisys.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.Test;
+import org.strisys.data.AddressDataService;
+import org.strisys.model.entity.Address;
+import org.strisys.model.entity.AddressState;
+import org.strisys.service.imports.AddressImportFormat;
+import org.strisys.service.imports.AddressImportResult;
+import org.strisys.service.search.AddressPrefixIndex;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AddressServiceTest {
+    private final AddressDataService ds = mock(AddressDataService.class);
+    private final AddressPrefixIndex index = new AddressPrefixIndex();
+    private final List<Integer> batches = new ArrayList<>();
+
+    private AddressService create(int batchSize, int maxErrors) {
+        when(ds.saveAll(anyList())).thenAnswer(invocation -> {
+            List<AddressState> states = invocation.getArgument(0);
+            batches.add(states.size());
+            return states.stream().map(Address::new).toList();
+        });
+
+        return new AddressService(ds, index, Validation.buildDefaultValidatorFactory().getValidator(), new ObjectMapper(), batchSize, maxErrors);
+    }
+
+    private static ByteArrayInputStream body(String value) {
+        return new ByteArrayInputStream(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void whenImported_thenCommittedInBatchesOfTheConfiguredSize() throws IOException {
+        AddressService service = create(2, 100);
+        StringBuilder csv = new StringBuilder("street1,city,zipCode\n");
+
+        for (int i = 1; i <= 5; i++) {
+            csv.append(i).append(" Main St,Springfield,62701\n");
+        }
+
+        // Apply
+        AddressImportResult result = service.importAll(body(csv.toString()), AddressImportFormat.CSV);
+
+        // Assert
+        assertThat(result.imported()).isEqualTo(5);
+        assertThat(result.rejected()).isZero();
+        assertThat(batches).containsExactly(2, 2, 1);
+        assertThat(index.size()).isEqualTo(5);
+    }
+
+    @Test
+    void whenRecordsInvalid_thenAllCountedButOnlyMaxErrorsReported() throws IOException {
+        AddressService service = create(10, 2);
+        String ndjson = "{\"street1\":\"1 Main St\",\"city\":\"Springfield\",\"zipCode\":\"62701\"}\n"
+                + "{\"city\":\"Springfield\",\"zipCode\":\"not-a-zip\"}\n"
+                + "not json\n"
+                + "{\"city\":\"Spring field 9\"}\n"
+                + "{\"street1\":\"2 Main St\",\"city\":\"Springfield\"}\n";
+
+        // Apply
+        AddressImportResult result = service.importAll(body(ndjson), AddressImportFormat.NDJSON);
+
+        // Assert
+        assertThat(result.imported()).isEqualTo(2);
+        assertThat(result.rejected()).isEqualTo(3);
+        assertThat(result.errors()).extracting(AddressImportResult.Error::line).containsExactly(2L, 3L);
+        assertThat(result.errors().get(0).message()).startsWith("zipCode:");
+        assertThat(batches).containsExactly(2);
+    }
+}
@@ -0,0 +1,67 @@
+package org.strisys.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import org.strisys.data.PhotoDataService;
+import org.strisys.model.entity.PhotoVariant;
+import org.strisys.model.id.TimeOrderedUuid;
+import org.strisys.service.cache.PhotoFileCache;
+import org.strisys.service.cache.PhotoListingCache;
+import org.strisys.service.derivative.PhotoDerivativeService;
+import org.strisys.service.writebehind.PhotoWriteBehindService;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PhotoServiceTest {
+    private static final byte[] BYTES = {1, 2, 3, 4, 5, 6, 7, 8};
+
+    private final PhotoDataService ds = mock(PhotoDataService.class);
+    private PhotoService service;
+
+    @BeforeEach
+    void setUp() {
+        PhotoFileCache cache = new PhotoFileCache(DataSize.ofKilobytes(64), DataSize.ofKilobytes(16));
+        service = new PhotoService(ds, cache, mock(PhotoListingCache.class), mock(PhotoDerivativeService.class),
+                mock(PhotoWriteBehindService.class), new SimpleMeterRegistry(), 1024);
+        when(ds.writeFile(anyString(), eq(PhotoVariant.ORIGINAL), anyLong(), anyLong(), any())).thenAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(4).write(BYTES);
+            return (long) BYTES.length;
+        });
+    }
+
+    private byte[] download(String id) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.writeFile(id, BYTES.length, 0, BYTES.length, out);
+
+        return out.toByteArray();
+    }
+
+    @Test
+    void whenIdSpelledInAnotherCase_thenSharesAndInvalidatesOneCacheEntry() throws IOException {
+        String id = TimeOrderedUuid.next();
+        String upper = id.toUpperCase(Locale.ROOT);
+
+        // Apply, Assert (both spellings are served from one fill)
+        assertThat(download(id)).isEqualTo(BYTES);
+        assertThat(download(upper)).isEqualTo(BYTES);
+        verify(ds, times(1)).writeFile(anyString(), eq(PhotoVariant.ORIGINAL), anyLong(), anyLong(), any());
+
+        // Apply, Assert (removing either spelling drops the cached bytes)
+        service.remove(upper);
+        assertThat(download(id)).isEqualTo(BYTES);
+        verify(ds, times(2)).writeFile(anyString(), eq(PhotoVariant.ORIGINAL), anyLong(), anyLong(), any());
+    }
+}
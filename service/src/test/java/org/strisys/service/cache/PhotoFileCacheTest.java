@@ -0,0 +1,60 @@
+package org.strisys.service.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PhotoFileCacheTest {
+
+    private static byte[] create(int size) {
+        byte[] bytes = new byte[size];
+
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) i;
+        }
+
+        return bytes;
+    }
+
+    @Test
+    void whenLoaded_thenServesRangesOffHeap() throws IOException {
+        PhotoFileCache cache = new PhotoFileCache(DataSize.ofKilobytes(64), DataSize.ofKilobytes(16));
+        byte[] bytes = create(10_000);
+
+        // Apply
+        ByteBuffer loaded = cache.load("a", bytes.length, out -> out.write(bytes));
+        ByteBuffer fetched = cache.get("a");
+
+        // Assert
+        assertThat(loaded.isDirect()).isTrue();
+        assertThat(fetched).isNotNull();
+        assertThat(fetched.isReadOnly()).isTrue();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertThat(PhotoFileCache.write(fetched, 100, 50, out)).isEqualTo(50);
+        assertThat(out.toByteArray()).isEqualTo(Arrays.copyOfRange(bytes, 100, 150));
+    }
+
+    @Test
+    void whenOverBudget_thenEvictsByWeight() throws IOException {
+        PhotoFileCache cache = new PhotoFileCache(DataSize.ofKilobytes(64), DataSize.ofKilobytes(16));
+        byte[] bytes = create(16 * 1024);
+
+        assertThat(cache.accepts(bytes.length + 1)).isFalse();
+
+        // Apply
+        for (int i = 0; i < 10; i++) {
+            cache.load("photo-" + i, bytes.length, out -> out.write(bytes));
+        }
+
+        // Assert
+        assertThat(cache.getWeightedSize()).isLessThanOrEqualTo(DataSize.ofKilobytes(64).toBytes());
+
+        cache.invalidate("photo-9");
+        assertThat(cache.get("photo-9")).isNull();
+    }
+}
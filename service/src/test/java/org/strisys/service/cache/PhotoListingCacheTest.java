@@ -0,0 +1,127 @@
+package org.strisys.service.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.strisys.data.PhotoDataService;
+import org.strisys.data.routing.PrimaryReads;
+import org.strisys.model.entity.Photo;
+import org.strisys.model.entity.PhotoState;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PhotoListingCacheTest {
+    private final PhotoDataService ds = mock(PhotoDataService.class);
+    private final PrimaryReads primary = mock(PrimaryReads.class);
+    private final List<Photo> photos = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        when(primary.get(any())).thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(0)).get());
+        when(ds.findAll()).thenAnswer(invocation -> List.copyOf(photos));
+        photos.add(create("a.png"));
+    }
+
+    private static Photo create(String fileName) {
+        PhotoState state = PhotoState.createRandom();
+        state.setFileName(fileName);
+        state.setCreatedAt(null);
+
+        return Photo.create(state);
+    }
+
+    private PhotoListingCache newCache(boolean gzip) {
+        return new PhotoListingCache(ds, primary, new ObjectMapper(), new SimpleMeterRegistry(), gzip);
+    }
+
+    @Test
+    void whenInvalidated_thenRebuiltOnceOnNextRead() {
+        PhotoListingCache cache = newCache(true);
+
+        // Apply
+        PhotoListingCache.Snapshot first = cache.get();
+        PhotoListingCache.Snapshot cached = cache.get();
+        photos.add(create("b.png"));
+        cache.invalidate();
+        PhotoListingCache.Snapshot rebuilt = cache.get();
+        cache.get();
+
+        // Assert
+        assertThat(cached).isSameAs(first);
+        assertThat(rebuilt).isNotSameAs(first);
+        assertThat(new String(rebuilt.json())).contains("a.png", "b.png");
+        verify(ds, times(2)).findAll();
+    }
+
+    @Test
+    void whenWrittenDuringRebuild_thenThatSnapshotIsNotCached() {
+        PhotoListingCache cache = newCache(false);
+        when(ds.findAll()).thenAnswer(invocation -> {
+            List<Photo> read = List.copyOf(photos);
+            // a write commits after the read but before the snapshot is stored
+            photos.add(create("late.png"));
+            cache.invalidate();
+            return read;
+        }).thenAnswer(invocation -> List.copyOf(photos));
+
+        // Apply
+        PhotoListingCache.Snapshot raced = cache.get();
+        PhotoListingCache.Snapshot next = cache.get();
+
+        // Assert
+        assertThat(new String(raced.json())).doesNotContain("late.png");
+        assertThat(new String(next.json())).contains("late.png");
+        assertThat(cache.get()).isSameAs(next);
+        verify(ds, times(2)).findAll();
+    }
+
+    @Test
+    void whenContentUnchanged_thenEtagStable() {
+        PhotoListingCache cache = newCache(true);
+
+        // Apply
+        PhotoListingCache.Snapshot first = cache.get();
+        cache.invalidate();
+        PhotoListingCache.Snapshot same = cache.get();
+        PhotoListingCache.Snapshot elsewhere = newCache(true).get();
+        photos.add(create("b.png"));
+        cache.invalidate();
+        PhotoListingCache.Snapshot changed = cache.get();
+
+        // Assert
+        assertThat(first.etag()).matches("\"[0-9a-f]{32}\"");
+        assertThat(same.etag()).isEqualTo(first.etag());
+        assertThat(elsewhere.etag()).isEqualTo(first.etag());
+        assertThat(changed.etag()).isNotEqualTo(first.etag());
+    }
+
+    @Test
+    void whenGzipEnabled_thenBothEncodingsCarryTheirOwnEtag() throws IOException {
+        // Apply
+        PhotoListingCache.Snapshot gzipped = newCache(true).get();
+        PhotoListingCache.Snapshot identity = newCache(false).get();
+
+        // Assert
+        assertThat(gzipped.hasGzip()).isTrue();
+        assertThat(gzipped.gzipEtag()).isEqualTo(gzipped.etag().replaceAll("\"$", "-gzip\""));
+
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped.gzipped()))) {
+            assertThat(in.readAllBytes()).isEqualTo(gzipped.json());
+        }
+
+        assertThat(identity.hasGzip()).isFalse();
+        assertThat(identity.gzipEtag()).isNull();
+        assertThat(identity.json()).isEqualTo(gzipped.json());
+    }
+}
@@ -0,0 +1,124 @@
+package org.strisys.service.cache;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SingleFlightTest {
+    private final Counter joined = new SimpleMeterRegistry().counter("joined");
+    private final SingleFlight<String, String> flight = new SingleFlight<>(joined);
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private CompletableFuture<String> lead(String key, CountDownLatch started, CountDownLatch release, AtomicInteger calls) {
+        return CompletableFuture.supplyAsync(() -> flight.execute(key, () -> {
+            calls.incrementAndGet();
+            started.countDown();
+            await(release);
+            return "value-" + calls.get();
+        }), executor);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void awaitJoined(double count) throws InterruptedException {
+        while (joined.count() < count) {
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void whenCalledConcurrently_thenOneCallSharesItsResult() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> leader = lead("a", started, release, calls);
+        started.await();
+        CompletableFuture<String> follower = CompletableFuture.supplyAsync(() -> flight.execute("a", () -> "unused"), executor);
+        awaitJoined(1);
+
+        // Apply
+        release.countDown();
+
+        // Assert
+        assertThat(leader.get()).isEqualTo("value-1");
+        assertThat(follower.get()).isEqualTo("value-1");
+        assertThat(calls).hasValue(1);
+        assertThat(flight.execute("a", () -> "fresh")).isEqualTo("fresh");
+    }
+
+    @Test
+    void whenCallFails_thenFollowersGetTheFailureAndLaterCallersRetry() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> {
+            try {
+                return flight.execute("a", () -> {
+                    started.countDown();
+                    await(release);
+                    throw new IOException("read failed");
+                });
+            } catch (Exception e) {
+                return e.getMessage();
+            }
+        }, executor);
+        started.await();
+        CompletableFuture<String> follower = CompletableFuture.supplyAsync(() -> {
+            try {
+                return flight.<IOException>execute("a", () -> "unused");
+            } catch (IOException e) {
+                return e.getMessage();
+            }
+        }, executor);
+        awaitJoined(1);
+
+        // Apply
+        release.countDown();
+
+        // Assert
+        assertThat(leader.get()).isEqualTo("read failed");
+        assertThat(follower.get()).isEqualTo("read failed");
+        assertThat(flight.execute("a", () -> "retried")).isEqualTo("retried");
+        assertThatThrownBy(() -> flight.execute("b", () -> { throw new IllegalStateException("boom"); }))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void whenForgotten_thenLaterCallersStartTheirOwnCall() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> leader = lead("a", started, release, calls);
+        started.await();
+
+        // Apply
+        flight.forget("a");
+        String after = flight.execute("a", () -> "after-remove");
+        release.countDown();
+
+        // Assert
+        assertThat(after).isEqualTo("after-remove");
+        assertThat(leader.get()).isEqualTo("value-1");
+        assertThat(joined.count()).isZero();
+    }
+}
@@ -0,0 +1,161 @@
+package org.strisys.service.derivative;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.strisys.data.PhotoDataService;
+import org.strisys.data.routing.PrimaryReads;
+import org.strisys.model.entity.Photo;
+import org.strisys.model.entity.PhotoState;
+import org.strisys.model.entity.PhotoVariant;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PhotoDerivativeServiceTest {
+    private final PhotoDataService ds = mock(PhotoDataService.class);
+    private final PrimaryReads primary = mock(PrimaryReads.class);
+    private final Map<PhotoVariant, byte[]> saved = new EnumMap<>(PhotoVariant.class);
+    private PhotoDerivativeService service;
+
+    @BeforeEach
+    void setUp() {
+        when(primary.get(any())).thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(0)).get());
+        doAnswer(invocation -> {
+            try (InputStream in = invocation.getArgument(2)) {
+                saved.put(invocation.getArgument(1), in.readAllBytes());
+            }
+            return null;
+        }).when(ds).saveVariant(anyString(), any(), any(), anyLong());
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.destroy();
+    }
+
+    private static Photo create(long size) {
+        PhotoState state = PhotoState.createRandom();
+        state.setSize(size);
+
+        return Photo.create(state);
+    }
+
+    private static byte[] createPng(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = image.createGraphics();
+
+        try {
+            graphics.setColor(Color.ORANGE);
+            graphics.fillRect(0, 0, width / 2, height);
+        } finally {
+            graphics.dispose();
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private static String getFormat(byte[] bytes) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(bytes))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            return readers.hasNext() ? readers.next().getFormatName().toLowerCase() : null;
+        }
+    }
+
+    @Test
+    void whenPngGenerated_thenEachVariantBoundedByItsMaxEdge() throws IOException {
+        service = new PhotoDerivativeService(ds, primary, 1, 1, false);
+        byte[] png = createPng(2400, 1200);
+        Photo photo = create(png.length);
+        when(ds.tryGet(photo.getUuid())).thenReturn(photo);
+        when(ds.writeFile(eq(photo.getUuid()), eq(0L), eq((long) png.length), any())).thenAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(3).write(png);
+            return (long) png.length;
+        });
+
+        // Apply
+        service.generate(photo.getUuid(), png.length);
+
+        // Assert
+        assertThat(saved).containsOnlyKeys(PhotoVariant.THUMBNAIL, PhotoVariant.MEDIUM);
+
+        for (Map.Entry<PhotoVariant, byte[]> entry : saved.entrySet()) {
+            BufferedImage variant = ImageIO.read(new ByteArrayInputStream(entry.getValue()));
+            int maxEdge = entry.getKey().getMaxEdge();
+
+            assertThat(getFormat(entry.getValue())).isEqualTo("png");
+            assertThat(variant.getWidth()).isEqualTo(maxEdge);
+            assertThat(variant.getHeight()).isEqualTo(maxEdge / 2);
+            assertThat(variant.getColorModel().hasAlpha()).isTrue();
+        }
+    }
+
+    @Test
+    void whenPhotoDeletedWhileGenerating_thenNoVariantSaved() throws IOException {
+        service = new PhotoDerivativeService(ds, primary, 1, 1, false);
+        byte[] png = createPng(320, 240);
+        Photo photo = create(png.length);
+        when(ds.tryGet(photo.getUuid())).thenReturn(Photo.getNull());
+        when(ds.writeFile(eq(photo.getUuid()), eq(0L), anyLong(), any())).thenAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(3).write(png);
+            return (long) png.length;
+        });
+
+        // Apply
+        service.generate(photo.getUuid(), png.length);
+
+        // Assert
+        assertThat(saved).isEmpty();
+    }
+
+    @Test
+    void whenQueueFull_thenWorkDropped() throws Exception {
+        service = new PhotoDerivativeService(ds, primary, 1, 1, false);
+        CountDownLatch release = new CountDownLatch(1);
+        when(ds.writeFile(anyString(), eq(0L), anyLong(), any())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return 0L;
+        });
+        Photo running = create(10);
+        Photo queued = create(10);
+        Photo dropped = create(10);
+
+        // Apply
+        service.schedule(running);
+        service.schedule(queued);
+        service.schedule(dropped);
+        release.countDown();
+
+        // Assert
+        verify(ds, timeout(5000)).writeFile(eq(running.getUuid()), eq(0L), anyLong(), any());
+        verify(ds, timeout(5000)).writeFile(eq(queued.getUuid()), eq(0L), anyLong(), any());
+        verify(ds, never()).writeFile(eq(dropped.getUuid()), eq(0L), anyLong(), any());
+    }
+}
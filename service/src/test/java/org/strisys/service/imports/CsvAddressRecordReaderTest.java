@@ -0,0 +1,94 @@
+package org.strisys.service.imports;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CsvAddressRecordReaderTest {
+
+    private static List<AddressRecordReader.Record> readAll(String body) throws IOException {
+        List<AddressRecordReader.Record> records = new ArrayList<>();
+
+        try (AddressRecordReader reader = new CsvAddressRecordReader(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)))) {
+            AddressRecordReader.Record record;
+
+            while ((record = reader.next()) != null) {
+                records.add(record);
+            }
+        }
+
+        return records;
+    }
+
+    @Test
+    void whenFieldsQuoted_thenCommasQuotesAndNewlinesKept() throws IOException {
+        String body = "Street_1,city,Zip-Code,ignored\r\n"
+                + "\"1 Main St, Apt 2\",Springfield,62701,x\r\n"
+                + "\"12 \"\"Oak\"\" Rd\",Salem,97301,x\n"
+                + "\n"
+                + "\"7 Elm\nSuite 5\",Austin,73301,x\n"
+                + "3 Birch Ln,Reno,89501\n";
+
+        // Apply
+        List<AddressRecordReader.Record> records = readAll(body);
+
+        // Assert
+        assertThat(records).hasSize(4);
+        assertThat(records.get(0).state().getStreet1()).isEqualTo("1 Main St, Apt 2");
+        assertThat(records.get(0).state().getCity()).isEqualTo("Springfield");
+        assertThat(records.get(0).state().getZipCode()).isEqualTo("62701");
+        assertThat(records.get(1).state().getStreet1()).isEqualTo("12 \"Oak\" Rd");
+        assertThat(records.get(2).line()).isEqualTo(5);
+        assertThat(records.get(2).state().getStreet1()).isEqualTo("7 Elm\nSuite 5");
+        assertThat(records.get(3).line()).isEqualTo(7);
+        assertThat(records.get(3).error()).isEqualTo("Expected 4 fields but found 3");
+    }
+
+    @Test
+    void whenQuoteNeverCloses_thenRecordRejected() throws IOException {
+        // Apply
+        List<AddressRecordReader.Record> records = readAll("street1,city\n\"9 Pine,Boise\n10 Fir,Boise\n");
+
+        // Assert
+        assertThat(records).hasSize(1);
+        assertThat(records.get(0).line()).isEqualTo(2);
+        assertThat(records.get(0).error()).isEqualTo("Unterminated quoted field");
+    }
+
+    @Test
+    void whenStrayQuoteOpensAnEndlessField_thenRejectedAtTheCapAndReadingResumes() throws IOException {
+        StringBuilder body = new StringBuilder("street1,city\n\"stray,Boise\n");
+        String filler = "1 Filler Road,Boise\n";
+
+        while (body.length() < AddressRecordReader.MAX_RECORD_LENGTH * 2) {
+            body.append(filler);
+        }
+
+        // Apply
+        List<AddressRecordReader.Record> records = readAll(body.toString());
+
+        // Assert
+        assertThat(records.get(0).line()).isEqualTo(2);
+        assertThat(records.get(0).error()).isEqualTo("Unterminated quoted field");
+        assertThat(records.size()).isGreaterThan(1);
+        assertThat(records.get(records.size() - 1).state().getStreet1()).isEqualTo("1 Filler Road");
+    }
+
+    @Test
+    void whenLineExceedsTheCap_thenRecordRejected() throws IOException {
+        String body = "street1,city\n" + "x".repeat(AddressRecordReader.MAX_RECORD_LENGTH * 2) + ",Boise\n2 Oak St,Reno\n";
+
+        // Apply
+        List<AddressRecordReader.Record> records = readAll(body);
+
+        // Assert
+        assertThat(records).hasSize(2);
+        assertThat(records.get(0).error()).startsWith("Record exceeds");
+        assertThat(records.get(1).line()).isEqualTo(3);
+        assertThat(records.get(1).state().getCity()).isEqualTo("Reno");
+    }
+}
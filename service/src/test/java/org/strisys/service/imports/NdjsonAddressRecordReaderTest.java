@@ -0,0 +1,43 @@
+package org.strisys.service.imports;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.strisys.model.entity.AddressState;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NdjsonAddressRecordReaderTest {
+
+    @Test
+    void whenLinesMalformed_thenEachRejectedByLineAndTheRestRead() throws IOException {
+        String body = "{\"street1\":\"1 Main St\",\"city\":\"Salem\"}\n"
+                + "\n"
+                + "{\"street1\": \n"
+                + "null\n"
+                + "[1, 2]\n"
+                + "{\"city\":\"Reno\"}\r\n";
+        List<AddressRecordReader.Record> records = new ArrayList<>();
+
+        // Apply
+        try (AddressRecordReader reader = new NdjsonAddressRecordReader(
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), new ObjectMapper().readerFor(AddressState.class))) {
+            AddressRecordReader.Record record;
+
+            while ((record = reader.next()) != null) {
+                records.add(record);
+            }
+        }
+
+        // Assert
+        assertThat(records).extracting(AddressRecordReader.Record::line).containsExactly(1L, 3L, 4L, 5L, 6L);
+        assertThat(records.get(0).state().getStreet1()).isEqualTo("1 Main St");
+        assertThat(records.get(1).error()).isNotBlank();
+        assertThat(records.get(2).error()).isEqualTo("Expected a JSON object");
+        assertThat(records.get(3).error()).isNotBlank();
+        assertThat(records.get(4).state().getCity()).isEqualTo("Reno");
+    }
+}
@@ -0,0 +1,55 @@
+package org.strisys.service.lookup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LookupResultTest {
+    private static final String A = "0190f5c2-7b1e-7a3c-8d4e-5f6a7b8c9d0e";
+    private static final String B = "0190f5c2-7b1e-7a3c-8d4e-5f6a7b8c9d0f";
+    private static final String UNKNOWN = "0190f5c2-7b1e-7a3c-8d4e-5f6a7b8c9d10";
+
+    private final Map<String, String> byId = Map.of(A, "a", B, "b");
+
+    @Test
+    void whenFound_thenInRequestOrder() {
+        // Apply
+        LookupResult<String> result = LookupResult.of(List.of(B, A), byId);
+
+        // Assert
+        assertThat(result.found()).containsExactly("b", "a");
+        assertThat(result.missing()).isEmpty();
+    }
+
+    @Test
+    void whenRequestedTwice_thenDeduplicatedByCanonicalId() {
+        // Apply
+        LookupResult<String> result = LookupResult.of(List.of(A, A.toUpperCase(), B, UNKNOWN, UNKNOWN.toUpperCase()), byId);
+
+        // Assert
+        assertThat(result.found()).containsExactly("a", "b");
+        assertThat(result.missing()).containsExactly(UNKNOWN);
+    }
+
+    @Test
+    void whenMissing_thenReportedAsGiven() {
+        // Apply
+        LookupResult<String> result = LookupResult.of(Arrays.asList(UNKNOWN.toUpperCase(), "not-a-uuid", null, A, null), byId);
+
+        // Assert
+        assertThat(result.found()).containsExactly("a");
+        assertThat(result.missing()).containsExactly(UNKNOWN.toUpperCase(), "not-a-uuid", null);
+    }
+
+    @Test
+    void whenMapped_thenMissingKept() {
+        // Apply
+        LookupResult<Integer> result = LookupResult.of(List.of(A, UNKNOWN), byId).map(String::length);
+
+        // Assert
+        assertThat(result.found()).containsExactly(1);
+        assertThat(result.missing()).containsExactly(UNKNOWN);
+    }
+}
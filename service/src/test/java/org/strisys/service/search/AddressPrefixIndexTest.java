@@ -0,0 +1,48 @@
+package org.strisys.service.search;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.strisys.model.entity.Address;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AddressPrefixIndexTest {
+
+    private static Address create(String streetName, String city, String postalCode) {
+        return new Address(null, "1", null, streetName, "St", city, postalCode);
+    }
+
+    @Test
+    void whenSearched_thenMatchesWordPrefixesShortestFirst() {
+        AddressPrefixIndex index = new AddressPrefixIndex();
+        Address springfield = create("North Main", "Springfield", "62701");
+        Address springs = create("Elm", "Colorado Springs", "80903");
+        Address spring = create("Oak", "Spring", "77373");
+        index.addAll(List.of(springfield, springs, spring));
+
+        // Apply
+        List<AddressMatch> matches = index.search("spring", AddressField.CITY, 10);
+
+        // Assert
+        assertThat(matches).extracting(AddressMatch::uuid)
+                .containsExactly(spring.getUUID(), springfield.getUUID(), springs.getUUID());
+        assertThat(index.search("spring", AddressField.CITY, 2)).hasSize(2);
+        assertThat(index.search("main", AddressField.STREET, 10)).extracting(AddressMatch::uuid).containsExactly(springfield.getUUID());
+        assertThat(index.search("ain", null, 10)).isEmpty();
+    }
+
+    @Test
+    void whenSearchedLoosely_thenCaseAccentsAndSpacingIgnored() {
+        AddressPrefixIndex index = new AddressPrefixIndex();
+        Address montreal = create("Rue Saint-Denis", "Montr\u00e9al", "H2X 3K8");
+        index.add(montreal);
+        index.add(montreal);
+
+        // Apply, Assert
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.search("MONTRE", null, 10)).extracting(AddressMatch::uuid).containsExactly(montreal.getUUID());
+        assertThat(index.search("saint den", AddressField.STREET, 10)).hasSize(1);
+        assertThat(index.search("h2x3", AddressField.POSTAL_CODE, 10)).hasSize(1);
+        assertThat(index.search("h2x 3k", null, 10)).hasSize(1);
+        assertThat(index.search("  ", null, 10)).isEmpty();
+    }
+}
@@ -0,0 +1,75 @@
+package org.strisys.service.writebehind;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.strisys.model.id.TimeOrderedUuid;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PhotoSpoolTest {
+    @TempDir
+    private Path directory;
+
+    @Test
+    void whenStaged_thenRecoveredInArrivalOrder() throws IOException {
+        PhotoSpool spool = new PhotoSpool(directory, 1024);
+        String first = TimeOrderedUuid.next();
+        String second = TimeOrderedUuid.next();
+
+        // Apply
+        spool.stage(second, "b.png", "image/png", new ByteArrayInputStream(new byte[3000]));
+        spool.stage(first, "a.png", "image/png", new ByteArrayInputStream(new byte[] {1, 2, 3}));
+        Files.writeString(directory.resolve(TimeOrderedUuid.next() + ".bin"), "partial");
+
+        List<PhotoSpool.Staged> recovered = new PhotoSpool(directory, 1024).recover();
+
+        // Assert
+        assertThat(recovered).extracting(PhotoSpool.Staged::uuid).containsExactly(first, second);
+        assertThat(recovered.get(0).fileName()).isEqualTo("a.png");
+        assertThat(recovered.get(1).length()).isEqualTo(3000);
+
+        try (InputStream in = recovered.get(0).toUpload().content().getInputStream()) {
+            assertThat(in.readAllBytes()).containsExactly(1, 2, 3);
+        }
+
+        assertThat(Files.list(directory)).hasSize(4);
+    }
+
+    @Test
+    void whenDeletedOrFailed_thenNotRecovered() throws IOException {
+        PhotoSpool spool = new PhotoSpool(directory, 1024);
+        PhotoSpool.Staged written = spool.stage(TimeOrderedUuid.next(), "a.png", "image/png", new ByteArrayInputStream(new byte[10]));
+        PhotoSpool.Staged broken = spool.stage(TimeOrderedUuid.next(), "b.png", "image/png", new ByteArrayInputStream(new byte[10]));
+
+        // Apply
+        spool.delete(written);
+        spool.markFailed(broken);
+
+        // Assert
+        assertThat(Files.exists(directory.resolve(written.uuid() + ".properties"))).isFalse();
+        assertThat(spool.recover()).isEmpty();
+        assertThat(Files.exists(directory.resolve(broken.uuid() + ".bin.failed"))).isTrue();
+    }
+
+    @Test
+    void whenDescriptorUnreadable_thenSetAsideOnRecovery() throws IOException {
+        PhotoSpool spool = new PhotoSpool(directory, 1024);
+        PhotoSpool.Staged written = spool.stage(TimeOrderedUuid.next(), "a.png", "image/png", new ByteArrayInputStream(new byte[10]));
+        String emptied = TimeOrderedUuid.next();
+        Files.write(directory.resolve(emptied + ".bin"), new byte[10]);
+        Files.write(directory.resolve(emptied + ".properties"), new byte[0]);
+
+        // Apply
+        List<PhotoSpool.Staged> recovered = new PhotoSpool(directory, 1024).recover();
+
+        // Assert
+        assertThat(recovered).extracting(PhotoSpool.Staged::uuid).containsExactly(written.uuid());
+        assertThat(Files.exists(directory.resolve(emptied + ".properties.corrupt"))).isTrue();
+        assertThat(Files.exists(directory.resolve(emptied + ".bin.corrupt"))).isTrue();
+    }
+}
@@ -0,0 +1,200 @@
+package org.strisys.service.writebehind;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.strisys.data.PhotoDataService;
+import org.strisys.data.routing.PrimaryReads;
+import org.strisys.model.entity.Photo;
+import org.strisys.model.entity.PhotoState;
+import org.strisys.model.id.TimeOrderedUuid;
+import org.strisys.service.cache.PhotoListingCache;
+import org.strisys.service.derivative.PhotoDerivativeService;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PhotoWriteBehindServiceTest {
+    @TempDir
+    private Path directory;
+
+    private final PhotoDataService ds = mock(PhotoDataService.class);
+    private final PrimaryReads primary = mock(PrimaryReads.class);
+    private final PhotoDerivativeService derivatives = mock(PhotoDerivativeService.class);
+    private final List<List<String>> attempts = Collections.synchronizedList(new ArrayList<>());
+    private final Map<String, Photo> stored = new ConcurrentHashMap<>();
+    private PhotoWriteBehindService service;
+
+    @BeforeEach
+    void setUp() {
+        when(primary.get(any())).thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(0)).get());
+        when(ds.tryGet(anyString())).thenAnswer(invocation -> stored.getOrDefault(invocation.<String>getArgument(0), Photo.getNull()));
+    }
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        if (service != null) {
+            service.destroy();
+        }
+    }
+
+    private List<String> stage(int count) throws IOException {
+        PhotoSpool spool = new PhotoSpool(directory, 1024);
+        List<String> uuids = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            uuids.add(spool.stage(TimeOrderedUuid.next(), i + ".png", "image/png", new ByteArrayInputStream(new byte[8])).uuid());
+        }
+
+        return uuids;
+    }
+
+    // recovers whatever was staged and starts writing it at once, as one batch
+    private PhotoWriteBehindService start() throws IOException {
+        return new PhotoWriteBehindService(ds, primary, mock(PhotoListingCache.class), derivatives,
+                true, directory, 50, 1000, Duration.ofMillis(10), Duration.ofMillis(40), 1024, false);
+    }
+
+    private Photo store(String uuid) {
+        Photo photo = Photo.create(PhotoState.builder().uuid(uuid).fileName("stored.png").isNull(false).build());
+        stored.put(uuid, photo);
+
+        return photo;
+    }
+
+    private void awaitDrained() throws InterruptedException {
+        for (int i = 0; (i < 500) && (service.getPendingCount() > 0); i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void whenBatchFails_thenTransientErrorsRetryAndOnlyTheBadUploadIsSetAside() throws Exception {
+        List<String> uuids = stage(3);
+        String bad = uuids.get(1);
+
+        when(ds.saveAll(anyList(), anyList())).thenAnswer(invocation -> {
+            List<String> batch = invocation.getArgument(0);
+            attempts.add(List.copyOf(batch));
+
+            if (attempts.size() <= 2) {
+                throw new QueryTimeoutException("pool exhausted");
+            }
+
+            if (batch.contains(bad)) {
+                throw new DataIntegrityViolationException("bad row");
+            }
+
+            return List.of();
+        });
+
+        // Apply
+        service = start();
+        awaitDrained();
+
+        // Assert
+        assertThat(service.getPendingCount()).isZero();
+        assertThat(attempts).containsExactly(uuids, uuids, uuids, List.of(uuids.get(0)), List.of(bad), List.of(uuids.get(2)));
+        assertThat(service.getStatus(bad).state()).isEqualTo(PhotoUploadStatus.State.FAILED);
+        assertThat(Files.exists(directory.resolve(bad + ".bin.failed"))).isTrue();
+        assertThat(Files.exists(directory.resolve(uuids.get(0) + ".bin"))).isFalse();
+        assertThat(Files.exists(directory.resolve(uuids.get(2) + ".bin"))).isFalse();
+    }
+
+    @Test
+    void whenSingleUploadFailsTransiently_thenRetriedInOrderWithTheRest() throws Exception {
+        List<String> uuids = stage(2);
+
+        when(ds.saveAll(anyList(), anyList())).thenAnswer(invocation -> {
+            List<String> batch = invocation.getArgument(0);
+            attempts.add(List.copyOf(batch));
+
+            if (batch.size() > 1) {
+                throw new DataIntegrityViolationException("bad batch");
+            }
+
+            if (attempts.size() == 2) {
+                throw new QueryTimeoutException("pool exhausted");
+            }
+
+            return List.of();
+        });
+
+        // Apply
+        service = start();
+        awaitDrained();
+
+        // Assert
+        assertThat(service.getPendingCount()).isZero();
+        assertThat(attempts).containsExactly(uuids, List.of(uuids.get(0)), uuids, List.of(uuids.get(0)), List.of(uuids.get(1)));
+        assertThat(PhotoWriteBehindService.isTransient(new RuntimeException(new SQLTransientConnectionException()))).isTrue();
+        assertThat(PhotoWriteBehindService.isTransient(new DataIntegrityViolationException("x"))).isFalse();
+    }
+
+    @Test
+    void whenRecoveredUploadAlreadyCommitted_thenCompletedWithoutReplay() throws Exception {
+        List<String> uuids = stage(2);
+        String committed = uuids.get(0);
+        // the process died after the commit but before the spool files were deleted
+        Photo photo = store(committed);
+
+        when(ds.saveAll(anyList(), anyList())).thenAnswer(invocation -> {
+            attempts.add(List.copyOf(invocation.<List<String>>getArgument(0)));
+            return List.of();
+        });
+
+        // Apply
+        service = start();
+        awaitDrained();
+
+        // Assert
+        assertThat(service.getPendingCount()).isZero();
+        assertThat(attempts).containsExactly(List.of(uuids.get(1)));
+        assertThat(service.getStatus(committed).state()).isEqualTo(PhotoUploadStatus.State.COMMITTED);
+        assertThat(Files.list(directory)).isEmpty();
+        verify(derivatives, timeout(1000)).schedule(photo);
+    }
+
+    @Test
+    void whenCommitAcknowledgedWithTransientError_thenNotWrittenAgain() throws Exception {
+        List<String> uuids = stage(1);
+        String uuid = uuids.get(0);
+
+        when(ds.saveAll(anyList(), anyList())).thenAnswer(invocation -> {
+            attempts.add(List.copyOf(invocation.<List<String>>getArgument(0)));
+            // the row commits but the acknowledgement is lost
+            store(uuid);
+            throw new QueryTimeoutException("connection reset");
+        });
+
+        // Apply
+        service = start();
+        awaitDrained();
+
+        // Assert
+        assertThat(service.getPendingCount()).isZero();
+        assertThat(attempts).containsExactly(uuids);
+        assertThat(service.getStatus(uuid).state()).isEqualTo(PhotoUploadStatus.State.COMMITTED);
+        assertThat(Files.exists(directory.resolve(uuid + ".bin.failed"))).isFalse();
+    }
+}